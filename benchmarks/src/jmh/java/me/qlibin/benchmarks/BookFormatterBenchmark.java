@@ -0,0 +1,76 @@
+package me.qlibin.benchmarks;
+
+import me.qlibin.cache.BookIsbnCache;
+import me.qlibin.dto.BookView;
+import me.qlibin.formatters.BookFormatter;
+import me.qlibin.formatters.Isbns;
+import me.qlibin.readmodel.BookReadModel;
+import me.qlibin.snapshot.CatalogSnapshots;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * BookFormatter.parse for each kind of identifier, and BookFormatter.print, with the BookReadModel
+ * of the application against an embedded in-memory H2 database holding the sample book.
+ * A cache hit and a malformed identifier cost no query, the other lookups one.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class BookFormatterBenchmark {
+    private ConfigurableApplicationContext context;
+    private BookFormatter cachingFormatter;
+    private BookFormatter nonCachingFormatter;
+    private BookView book;
+    private String bookId;
+
+    @Setup
+    public void setUp() {
+        context = Fixtures.application("formatter-benchmark");
+        BookReadModel readModel = context.getBean(BookReadModel.class);
+        book = readModel.findByIsbn13(Isbns.toIsbn13(Fixtures.ISBN));
+        bookId = String.valueOf(book.getId());
+        // CatalogSnapshots is disabled unless configured, so the formatters go to the cache and the read model
+        cachingFormatter = new BookFormatter(readModel, new BookIsbnCache(1000, 3600), new CatalogSnapshots());
+        // a cache that cannot hold anything sends every ISBN to the read model
+        nonCachingFormatter = new BookFormatter(readModel, new BookIsbnCache(0, 3600), new CatalogSnapshots());
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public BookView parseIsbnCacheHit() {
+        return cachingFormatter.parse(Fixtures.ISBN, Locale.ENGLISH);
+    }
+
+    @Benchmark
+    public BookView parseIsbnCacheMiss() {
+        return nonCachingFormatter.parse(Fixtures.ISBN, Locale.ENGLISH);
+    }
+
+    @Benchmark
+    public BookView parseId() {
+        return nonCachingFormatter.parse(bookId, Locale.ENGLISH);
+    }
+
+    @Benchmark
+    public void parseMalformed(Blackhole blackhole) {
+        try {
+            blackhole.consume(nonCachingFormatter.parse("978-1-78528-415-2", Locale.ENGLISH));
+        } catch (IllegalArgumentException e) {
+            blackhole.consume(e);
+        }
+    }
+
+    @Benchmark
+    public String print() {
+        return cachingFormatter.print(book, Locale.ENGLISH);
+    }
+}
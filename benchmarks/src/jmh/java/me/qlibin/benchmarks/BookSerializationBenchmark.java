@@ -0,0 +1,44 @@
+package me.qlibin.benchmarks;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import me.qlibin.dto.BookView;
+import me.qlibin.entity.Book;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jackson serialization of a book with its author, publisher and reviewers, as an entity and as the
+ * BookView the /books endpoints render, with an ObjectMapper configured the way Spring Boot configures
+ * the one of the application.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class BookSerializationBenchmark {
+    @Param({"0", "10", "100"})
+    public int reviewers;
+
+    private ObjectMapper objectMapper;
+    private Book book;
+    private BookView view;
+
+    @Setup
+    public void setUp() {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        book = Fixtures.book(reviewers);
+        view = Fixtures.bookView(reviewers);
+    }
+
+    @Benchmark
+    public byte[] serializeEntity() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(book);
+    }
+
+    @Benchmark
+    public byte[] serializeView() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(view);
+    }
+}
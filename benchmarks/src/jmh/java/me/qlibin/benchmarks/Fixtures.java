@@ -0,0 +1,98 @@
+package me.qlibin.benchmarks;
+
+import me.qlibin.CookbookApplication;
+import me.qlibin.dto.BookView;
+import me.qlibin.dto.ReviewerView;
+import me.qlibin.entity.Author;
+import me.qlibin.entity.Book;
+import me.qlibin.entity.Publisher;
+import me.qlibin.entity.Reviewer;
+import me.qlibin.ingest.BookRecord;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.LongStream;
+
+/**
+ * Test data shared by the benchmarks.
+ */
+final class Fixtures {
+    static final String ISBN = "978-1-78528-415-1";
+
+    private Fixtures() {
+    }
+
+    static Book book(int reviewers) {
+        Author author = new Author("Alex", "Antonov");
+        author.setId(1L);
+        Publisher publisher = new Publisher("Packt");
+        publisher.setId(1L);
+        Book book = new Book(ISBN, "Spring Boot Recipes", author, publisher);
+        book.setId(1L);
+        book.setDescription("Examples and assignments from Spring Boot Cookbook");
+        List<Reviewer> reviewerList = new ArrayList<>(reviewers);
+        for (int i = 0; i < reviewers; i++) {
+            Reviewer reviewer = new Reviewer("Reviewer", "No. " + i);
+            reviewer.setId((long) i);
+            reviewerList.add(reviewer);
+        }
+        book.setReviewers(reviewerList);
+        return book;
+    }
+
+    static BookView bookView(int reviewers) {
+        BookView book = new BookView(1L, ISBN, 9781785284151L, "Spring Boot Recipes",
+                "Examples and assignments from Spring Boot Cookbook", 0L, new Date(),
+                1L, "Alex", "Antonov", 0L, new Date(), 1L, "Packt", 0L, new Date());
+        List<ReviewerView> reviewerList = new ArrayList<>(reviewers);
+        for (int i = 0; i < reviewers; i++) {
+            reviewerList.add(new ReviewerView(1L, (long) i, "Reviewer", "No. " + i, 0L, new Date()));
+        }
+        book.setReviewers(reviewerList);
+        return book;
+    }
+
+    /**
+     * The application against an in-memory H2 database of its own, seeded with the sample book by the StartupRunner.
+     * It is a web application on a random port, as the Spring Data REST controllers need their configuration.
+     */
+    static ConfigurableApplicationContext application(String databaseName) {
+        return new SpringApplicationBuilder(CookbookApplication.class)
+                .properties("spring.datasource.url=jdbc:h2:mem:" + databaseName + ";DB_CLOSE_DELAY=-1",
+                        "server.port=0",
+                        "logging.level.root=WARN")
+                .run();
+    }
+
+    /**
+     * The n-th ISBN of a synthetic catalog: the 979 prefix, n on nine digits and a valid check digit.
+     */
+    static String isbn(long n) {
+        long twelveDigits = 979_000_000_000L + n;
+        int sum = 0;
+        long rest = twelveDigits;
+        for (int position = 12; position >= 1; position--) {
+            int digit = (int) (rest % 10);
+            sum += digit * (position % 2 == 1 ? 1 : 3);
+            rest /= 10;
+        }
+        return String.valueOf(twelveDigits * 10 + (10 - sum % 10) % 10);
+    }
+
+    static Iterator<BookRecord> catalog(int size) {
+        return LongStream.range(0, size).mapToObj(n -> {
+            BookRecord record = new BookRecord();
+            record.setIsbn(isbn(n));
+            record.setTitle("Book " + n);
+            record.setDescription("Description of book " + n);
+            record.setAuthorFirstName("Author");
+            record.setAuthorLastName("No. " + (n % 100));
+            record.setPublisherName("Publisher No. " + (n % 10));
+            return record;
+        }).iterator();
+    }
+}
@@ -0,0 +1,44 @@
+package me.qlibin.benchmarks;
+
+import me.qlibin.controllers.BookController;
+import me.qlibin.formatters.BookIdentifier;
+import me.qlibin.formatters.Isbns;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The per-request parsing of the ISBN path variable: BookController.IsbnEditor,
+ * which a new instance of is registered for every request, and the ISBN classification behind it.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class IsbnEditorBenchmark {
+    @Param({"978-1-78528-415-1", "1785284150", "42"})
+    public String text;
+
+    private BookController controller;
+
+    @Setup
+    public void setUp() {
+        controller = new BookController();
+    }
+
+    @Benchmark
+    public String isbnEditorRoundTrip() {
+        BookController.IsbnEditor editor = controller.new IsbnEditor();
+        editor.setAsText(text);
+        return editor.getAsText();
+    }
+
+    @Benchmark
+    public long toIsbn13() {
+        return Isbns.toIsbn13(text);
+    }
+
+    @Benchmark
+    public BookIdentifier classify() {
+        return BookIdentifier.parse(text);
+    }
+}
@@ -0,0 +1,91 @@
+package me.qlibin.benchmarks;
+
+import me.qlibin.dto.BookView;
+import me.qlibin.entity.Book;
+import me.qlibin.formatters.Isbns;
+import me.qlibin.ingest.CatalogImporter;
+import me.qlibin.readmodel.BookReadModel;
+import me.qlibin.repository.BookRepository;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * BookRepository entity lookups and the BookReadModel queries that replaced them for the /books endpoints,
+ * against an embedded in-memory H2 database, seeded through the bulk importer
+ * with catalogs of several sizes. Every catalog size gets a fresh application context and database.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RepositoryBenchmark {
+    @Param({"100", "1000", "10000"})
+    public int catalogSize;
+
+    private ConfigurableApplicationContext context;
+    private BookRepository bookRepository;
+    private BookReadModel bookReadModel;
+    private String[] isbns;
+    private long[] isbn13s;
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int next;
+
+        int next(int bound) {
+            next = next + 1 < bound ? next + 1 : 0;
+            return next;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = Fixtures.application("benchmark-" + catalogSize);
+        bookRepository = context.getBean(BookRepository.class);
+        bookReadModel = context.getBean(BookReadModel.class);
+        context.getBean(CatalogImporter.class).importBooks(Fixtures.catalog(catalogSize));
+        isbns = new String[catalogSize];
+        isbn13s = new long[catalogSize];
+        for (int n = 0; n < catalogSize; n++) {
+            isbns[n] = Fixtures.isbn(n);
+            isbn13s[n] = Isbns.toIsbn13(isbns[n]);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Book findBookByIsbn(Cursor cursor) {
+        return bookRepository.findBookByIsbn(isbns[cursor.next(catalogSize)]);
+    }
+
+    @Benchmark
+    public Book findDetailedByIsbn13(Cursor cursor) {
+        return bookRepository.findDetailedByIsbn13(isbn13s[cursor.next(catalogSize)]);
+    }
+
+    @Benchmark
+    public Iterable<Book> findAll() {
+        return bookRepository.findAll();
+    }
+
+    @Benchmark
+    public List<Book> findAllDetailed() {
+        return bookRepository.findAllDetailed();
+    }
+
+    @Benchmark
+    public BookView readModelFindByIsbn13(Cursor cursor) {
+        return bookReadModel.findByIsbn13(isbn13s[cursor.next(catalogSize)]);
+    }
+
+    @Benchmark
+    public List<BookView> readModelFindAll() {
+        return bookReadModel.findAll();
+    }
+}
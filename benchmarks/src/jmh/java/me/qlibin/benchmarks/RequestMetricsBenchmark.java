@@ -0,0 +1,44 @@
+package me.qlibin.benchmarks;
+
+import me.qlibin.metrics.LogLinearHistogram;
+import me.qlibin.metrics.RequestMetrics;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The cost RequestMetricsInterceptor adds to every request. Run with "-prof gc" to check
+ * that recording allocates nothing (gc.alloc.rate.norm of 0 B/op).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class RequestMetricsBenchmark {
+    private final LogLinearHistogram histogram = new LogLinearHistogram();
+    private final RequestMetrics requestMetrics = new RequestMetrics();
+    private Method handlerMethod;
+
+    @Setup
+    public void setUp() throws NoSuchMethodException {
+        handlerMethod = RequestMetricsBenchmark.class.getMethod("recordRequest");
+    }
+
+    @Benchmark
+    public void recordLatency() {
+        histogram.record(ThreadLocalRandom.current().nextLong(1, 1_000_000));
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void recordLatencyContended() {
+        histogram.record(ThreadLocalRandom.current().nextLong(1, 1_000_000));
+    }
+
+    @Benchmark
+    public void recordRequest() {
+        requestMetrics.endpoint(handlerMethod, Method::getName)
+                .record(ThreadLocalRandom.current().nextLong(1, 1_000_000), 200, 1024);
+    }
+}
@@ -0,0 +1,71 @@
+package me.qlibin.benchmarks;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import me.qlibin.entity.Book;
+import me.qlibin.web.SmileHttpMessageConverter;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JSON against Smile for a page of books: the time to encode and to decode it, with ObjectMappers
+ * configured the way the application configures its message converters. The payload size is reported
+ * as the secondary result "bytes" of both benchmarks, so it is in the results next to the times.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class WireFormatBenchmark {
+    @Param({"json", "smile"})
+    public String format;
+
+    @Param({"1", "50"})
+    public int books;
+
+    private ObjectMapper objectMapper;
+    private JavaType listOfBooks;
+    private List<Book> page;
+    private byte[] payload;
+
+    @Setup
+    public void setUp() throws IOException {
+        Jackson2ObjectMapperBuilder builder = Jackson2ObjectMapperBuilder.json();
+        objectMapper = "smile".equals(format)
+                ? SmileHttpMessageConverter.smileObjectMapper(builder)
+                : builder.build();
+        listOfBooks = objectMapper.getTypeFactory().constructCollectionType(List.class, Book.class);
+        page = new ArrayList<>(books);
+        for (int i = 0; i < books; i++) {
+            page.add(Fixtures.book(3));
+        }
+        payload = objectMapper.writeValueAsBytes(page);
+    }
+
+    /**
+     * An event counter is reported as it is, rather than per unit of time like the other aux counters.
+     * JMH clears it before every iteration, so the benchmarks set it on every call, a single store.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class PayloadSize {
+        public long bytes;
+    }
+
+    @Benchmark
+    public byte[] encode(PayloadSize payloadSize) throws IOException {
+        byte[] encoded = objectMapper.writeValueAsBytes(page);
+        payloadSize.bytes = encoded.length;
+        return encoded;
+    }
+
+    @Benchmark
+    public List<Book> decode(PayloadSize payloadSize) throws IOException {
+        payloadSize.bytes = payload.length;
+        return objectMapper.readValue(payload, listOfBooks);
+    }
+}
@@ -0,0 +1,76 @@
+package org.test.bookpubstarter.dbcount;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Reads the row count estimates that the database maintains in its metadata tables for the query planner.
+ * They can be slightly off, but cost a single catalog lookup instead of a full scan of the table.
+ */
+public class ApproximateRowCounter {
+    protected final Log logger = LogFactory.getLog(getClass());
+
+    private static final String H2_QUERY = "select ROW_COUNT_ESTIMATE from INFORMATION_SCHEMA.TABLES " +
+            "where TABLE_SCHEMA = SCHEMA() and upper(TABLE_NAME) = upper(?)";
+    private static final String POSTGRESQL_QUERY = "select reltuples::bigint from pg_class " +
+            "where relkind = 'r' and relname = lower(?)";
+    private static final String MYSQL_QUERY = "select TABLE_ROWS from information_schema.TABLES " +
+            "where TABLE_SCHEMA = database() and TABLE_NAME = ?";
+
+    private final DataSource dataSource;
+    private volatile String query;
+    private volatile boolean resolved;
+
+    public ApproximateRowCounter(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    /**
+     * Returns the estimated number of rows of the table, or null if it is not known.
+     */
+    public Long estimate(String tableName) {
+        try (Connection connection = dataSource.getConnection()) {
+            String sql = resolveQuery(connection);
+            if (sql == null) {
+                return null;
+            }
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                statement.setString(1, tableName);
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    if (resultSet.next()) {
+                        long estimate = resultSet.getLong(1);
+                        // PostgreSQL reports -1 for tables that have never been analyzed
+                        return resultSet.wasNull() || estimate < 0 ? null : estimate;
+                    }
+                    return null;
+                }
+            }
+        } catch (SQLException e) {
+            logger.debug("Could not read the row count estimate of " + tableName, e);
+            return null;
+        }
+    }
+
+    private String resolveQuery(Connection connection) throws SQLException {
+        if (!resolved) {
+            String product = connection.getMetaData().getDatabaseProductName();
+            if ("H2".equals(product)) {
+                query = H2_QUERY;
+            } else if ("PostgreSQL".equals(product)) {
+                query = POSTGRESQL_QUERY;
+            } else if ("MySQL".equals(product) || "MariaDB".equals(product)) {
+                query = MYSQL_QUERY;
+            } else {
+                logger.info("Row count estimates are not supported for " + product + ", exact counts will be used");
+            }
+            resolved = true;
+        }
+        return query;
+    }
+}
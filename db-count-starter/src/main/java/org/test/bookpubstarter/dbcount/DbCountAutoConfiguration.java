@@ -1,17 +1,26 @@
 package org.test.bookpubstarter.dbcount;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.repository.CrudRepository;
 
+import javax.sql.DataSource;
 import java.util.Collection;
 
 @Configuration
+@EnableConfigurationProperties(DbCountProperties.class)
 public class DbCountAutoConfiguration {
+    @Autowired(required = false)
+    private DataSource dataSource;
+
     @Bean
     @ConditionalOnMissingBean
-    public DbCountRunner dbCountRunner(Collection<CrudRepository> repositories) {
-        return new DbCountRunner(repositories);
+    public DbCountRunner dbCountRunner(Collection<CrudRepository> repositories, DbCountProperties properties) {
+        return new DbCountRunner(repositories, properties,
+                dataSource != null ? new ApproximateRowCounter(dataSource) : null,
+                dataSource != null ? new ExactRowCounter(dataSource) : null);
     }
 }
@@ -0,0 +1,61 @@
+package org.test.bookpubstarter.dbcount;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@ConfigurationProperties(prefix = "dbcount")
+public class DbCountProperties {
+    /**
+     * Number of repositories counted at the same time.
+     */
+    private int parallelism = 4;
+
+    /**
+     * Time budget of a single repository count, measured from when a worker starts it, and the query timeout
+     * of its COUNT(*). A count that does not finish in time is cancelled and its previous value is kept.
+     */
+    private long timeoutMillis = 5000;
+
+    /**
+     * Read the row count estimates the database keeps in its metadata tables instead of running COUNT(*).
+     * Falls back to the exact count when the database or the table is not supported.
+     */
+    private boolean approximate = false;
+
+    /**
+     * Interval between two refreshes of the snapshot, or 0 to count only once at startup. Unless the counts
+     * are approximate, every refresh scans each table.
+     */
+    private long refreshIntervalMillis = 0;
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public void setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    public long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
+    public void setTimeoutMillis(long timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    public boolean isApproximate() {
+        return approximate;
+    }
+
+    public void setApproximate(boolean approximate) {
+        this.approximate = approximate;
+    }
+
+    public long getRefreshIntervalMillis() {
+        return refreshIntervalMillis;
+    }
+
+    public void setRefreshIntervalMillis(long refreshIntervalMillis) {
+        this.refreshIntervalMillis = refreshIntervalMillis;
+    }
+}
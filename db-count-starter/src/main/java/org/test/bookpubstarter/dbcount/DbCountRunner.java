@@ -2,29 +2,220 @@ package org.test.bookpubstarter.dbcount;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.boot.CommandLineRunner;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.annotation.AnnotationUtils;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.Repository;
+import org.springframework.util.StringUtils;
 
-import java.util.Collection;
+import java.lang.annotation.Annotation;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
-public class DbCountRunner implements CommandLineRunner {
+/**
+ * The counts are taken in the background, so the runner returns immediately and does not hold back
+ * the application startup. The repositories are counted in parallel, each one within its time budget,
+ * and the results are published as a DbCountSnapshot that may be refreshed periodically.
+ *
+ * The budget of a count starts when a worker picks it up, not when the refresh starts, so counts waiting
+ * for a worker are not charged for the ones before them. The exact counts run with a JDBC query timeout of
+ * the budget, see ExactRowCounter, as a statement that is executing does not react to the interrupt of
+ * its thread; only a repository whose table is not known is counted through the repository itself.
+ */
+public class DbCountRunner implements CommandLineRunner, DisposableBean {
     protected final Log logger = LogFactory.getLog(getClass());
 
     private Collection<CrudRepository> repositories;
+    private final DbCountProperties properties;
+    private final ApproximateRowCounter approximateRowCounter;
+    private final ExactRowCounter exactRowCounter;
+
+    private final ScheduledExecutorService scheduler;
+    private final ExecutorService counters;
+
+    private volatile DbCountSnapshot snapshot = DbCountSnapshot.EMPTY;
 
     public DbCountRunner(Collection<CrudRepository> repositories) {
+        this(repositories, new DbCountProperties(), null);
+    }
+
+    public DbCountRunner(Collection<CrudRepository> repositories, DbCountProperties properties,
+                         ApproximateRowCounter approximateRowCounter) {
+        this(repositories, properties, approximateRowCounter, null);
+    }
+
+    public DbCountRunner(Collection<CrudRepository> repositories, DbCountProperties properties,
+                         ApproximateRowCounter approximateRowCounter, ExactRowCounter exactRowCounter) {
         this.repositories = repositories;
+        this.properties = properties;
+        this.approximateRowCounter = approximateRowCounter;
+        this.exactRowCounter = exactRowCounter;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(daemonThreads("dbcount-scheduler-"));
+        this.counters = Executors.newFixedThreadPool(Math.max(1, properties.getParallelism()),
+                daemonThreads("dbcount-"));
     }
 
     @Override
     public void run(String... args) throws Exception {
-        repositories.forEach(crudRepository ->
-                logger.info(String.format("%s has %s entries",
-                        getRepositoryName(crudRepository.getClass()),
-                        crudRepository.count())));
+        if (properties.getRefreshIntervalMillis() > 0) {
+            scheduler.scheduleWithFixedDelay(this::refreshQuietly, 0,
+                    properties.getRefreshIntervalMillis(), TimeUnit.MILLISECONDS);
+        } else {
+            scheduler.execute(this::refreshQuietly);
+        }
+    }
+
+    /**
+     * The latest counts; empty until the first refresh has completed.
+     */
+    public DbCountSnapshot getSnapshot() {
+        return snapshot;
+    }
 
+    private void refreshQuietly() {
+        try {
+            refresh();
+        } catch (RuntimeException e) {
+            // an exception would cancel the periodic refresh, so it is only logged
+            logger.warn("Could not refresh the repository counts", e);
+        }
     }
 
+    /**
+     * Counts all the repositories and replaces the published snapshot. Blocks until every count has completed
+     * or run out of its time budget.
+     */
+    public DbCountSnapshot refresh() {
+        long start = System.nanoTime();
+        long budget = TimeUnit.MILLISECONDS.toNanos(properties.getTimeoutMillis());
+        int parallelism = Math.max(1, properties.getParallelism());
+        Map<String, CountTask> tasks = new LinkedHashMap<>();
+        repositories.forEach(crudRepository -> {
+            CountTask task = new CountTask(crudRepository);
+            tasks.put(uniqueName(tasks.keySet(), getRepositoryName(crudRepository.getClass())), task);
+            counters.execute(task);
+        });
+
+        Map<String, DbCountSnapshot.Count> counts = new LinkedHashMap<>();
+        int position = 0;
+        for (Map.Entry<String, CountTask> entry : tasks.entrySet()) {
+            String name = entry.getKey();
+            CountTask task = entry.getValue();
+            // if the counts before it keep to their budgets, a worker is free for this one by then
+            long latestStart = start + budget * (position++ / parallelism + 1);
+            DbCountSnapshot.Count count;
+            try {
+                count = task.await(latestStart, budget);
+            } catch (TimeoutException e) {
+                task.cancel(true);
+                count = lastKnown(name, DbCountSnapshot.Status.TIMEOUT, start);
+                logger.warn(String.format(task.started != null ? "%s was not counted within %d ms"
+                        : "%s was not counted, no worker was free within %d ms", name, properties.getTimeoutMillis()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                task.cancel(true);
+                count = lastKnown(name, DbCountSnapshot.Status.FAILED, start);
+            } catch (ExecutionException e) {
+                count = lastKnown(name, DbCountSnapshot.Status.FAILED, start);
+                logger.warn(String.format("%s could not be counted", name), e.getCause());
+            }
+            counts.put(name, count);
+            if (count.getStatus() == DbCountSnapshot.Status.OK) {
+                logger.info(String.format("%s has %s%s entries", name,
+                        count.isApproximate() ? "~" : "", count.getEntries()));
+            }
+        }
+        DbCountSnapshot refreshed = new DbCountSnapshot(new Date(), counts);
+        snapshot = refreshed;
+        return refreshed;
+    }
+
+    private DbCountSnapshot.Count count(CrudRepository crudRepository) throws SQLException {
+        long start = System.nanoTime();
+        Long entries = null;
+        boolean approximate = false;
+        String tableName = getTableName(crudRepository.getClass());
+        if (properties.isApproximate() && approximateRowCounter != null && tableName != null) {
+            entries = approximateRowCounter.estimate(tableName);
+            approximate = entries != null;
+        }
+        if (entries == null && exactRowCounter != null && tableName != null) {
+            entries = exactRowCounter.count(tableName, properties.getTimeoutMillis());
+        }
+        if (entries == null) {
+            entries = crudRepository.count();
+        }
+        return new DbCountSnapshot.Count(entries, approximate, DbCountSnapshot.Status.OK, elapsedMillis(start));
+    }
+
+    /**
+     * The count of one repository, which knows when a worker has started it.
+     */
+    private final class CountTask extends FutureTask<DbCountSnapshot.Count> {
+        private volatile Long started;
+
+        private CountTask(CrudRepository crudRepository) {
+            super(() -> count(crudRepository));
+        }
+
+        @Override
+        public void run() {
+            started = System.nanoTime();
+            super.run();
+        }
+
+        /**
+         * Waits for the count until its budget has run out, or until latestStart if no worker has picked it up.
+         */
+        private DbCountSnapshot.Count await(long latestStart, long budget)
+                throws InterruptedException, ExecutionException, TimeoutException {
+            while (true) {
+                Long startedAt = started;
+                long deadline = startedAt != null ? startedAt + budget : latestStart;
+                try {
+                    return get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                } catch (TimeoutException e) {
+                    if (startedAt != null || started == null) {
+                        throw e;
+                    }
+                }
+            }
+        }
+    }
+
+    private DbCountSnapshot.Count lastKnown(String name, DbCountSnapshot.Status status, long start) {
+        DbCountSnapshot.Count previous = snapshot.get(name);
+        return new DbCountSnapshot.Count(previous != null ? previous.getEntries() : null,
+                previous != null && previous.isApproximate(), status, elapsedMillis(start));
+    }
+
+    private static long elapsedMillis(long start) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+
+    @Override
+    public void destroy() {
+        scheduler.shutdownNow();
+        counters.shutdownNow();
+    }
+
+    private static ThreadFactory daemonThreads(String prefix) {
+        AtomicInteger sequence = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + sequence.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * The simple name of the application's own repositories, the full name of the repository interface
+     * for any other, so that repositories of different packages do not end up under the same name.
+     */
     private static String getRepositoryName(Class crudRepositoryClass) {
         for(Class repositoryInterface :
                 crudRepositoryClass.getInterfaces()) {
@@ -33,6 +224,46 @@ public class DbCountRunner implements CommandLineRunner {
                 return repositoryInterface.getSimpleName();
             }
         }
-        return "UnknownRepository";
+        for (Class repositoryInterface : crudRepositoryClass.getInterfaces()) {
+            if (Repository.class.isAssignableFrom(repositoryInterface)
+                    && !repositoryInterface.getName().startsWith("org.springframework.")) {
+                return repositoryInterface.getName();
+            }
+        }
+        return crudRepositoryClass.getName();
+    }
+
+    /**
+     * Two repositories implementing the same interface still get a count each.
+     */
+    private static String uniqueName(Set<String> taken, String name) {
+        String unique = name;
+        for (int i = 2; taken.contains(unique); i++) {
+            unique = name + "#" + i;
+        }
+        return unique;
+    }
+
+    /**
+     * The table of the repository's domain type: the name given in its JPA @Table annotation if any,
+     * otherwise the class name in snake case, as Spring Boot's default naming strategy maps it.
+     * The annotation is looked up by name, as the starter does not depend on JPA.
+     */
+    private static String getTableName(Class crudRepositoryClass) {
+        for (Class repositoryInterface : crudRepositoryClass.getInterfaces()) {
+            Class<?> domainType = ResolvableType.forClass(repositoryInterface).as(CrudRepository.class).resolveGeneric(0);
+            if (domainType != null) {
+                for (Annotation annotation : domainType.getAnnotations()) {
+                    if (annotation.annotationType().getName().equals("javax.persistence.Table")) {
+                        Object name = AnnotationUtils.getValue(annotation, "name");
+                        if (name instanceof String && StringUtils.hasText((String) name)) {
+                            return (String) name;
+                        }
+                    }
+                }
+                return domainType.getSimpleName().replaceAll("([a-z0-9])([A-Z])", "$1_$2").toLowerCase(Locale.ROOT);
+            }
+        }
+        return null;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,71 @@
+package org.test.bookpubstarter.dbcount;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Immutable result of one refresh of the repository counts, keyed by repository name.
+ */
+public class DbCountSnapshot {
+
+    public enum Status {
+        OK, TIMEOUT, FAILED
+    }
+
+    public static final DbCountSnapshot EMPTY = new DbCountSnapshot(new Date(0), Collections.emptyMap());
+
+    private final Date takenAt;
+    private final Map<String, Count> counts;
+
+    public DbCountSnapshot(Date takenAt, Map<String, Count> counts) {
+        this.takenAt = takenAt;
+        this.counts = Collections.unmodifiableMap(new LinkedHashMap<>(counts));
+    }
+
+    public Date getTakenAt() {
+        return takenAt;
+    }
+
+    public Map<String, Count> getCounts() {
+        return counts;
+    }
+
+    public Count get(String repositoryName) {
+        return counts.get(repositoryName);
+    }
+
+    public static class Count {
+        private final Long entries;
+        private final boolean approximate;
+        private final Status status;
+        private final long millis;
+
+        public Count(Long entries, boolean approximate, Status status, long millis) {
+            this.entries = entries;
+            this.approximate = approximate;
+            this.status = status;
+            this.millis = millis;
+        }
+
+        /**
+         * The number of entries, or the last known number when the count did not succeed (null if there is none).
+         */
+        public Long getEntries() {
+            return entries;
+        }
+
+        public boolean isApproximate() {
+            return approximate;
+        }
+
+        public Status getStatus() {
+            return status;
+        }
+
+        public long getMillis() {
+            return millis;
+        }
+    }
+}
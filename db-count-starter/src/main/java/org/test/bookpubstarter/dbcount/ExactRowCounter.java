@@ -0,0 +1,56 @@
+package org.test.bookpubstarter.dbcount;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.regex.Pattern;
+
+/**
+ * Runs the exact COUNT(*) of a table with a JDBC query timeout, so that a count that runs out of its
+ * time budget is stopped by the database rather than left running on its worker thread: interrupting
+ * the thread does not cancel a statement that is being executed.
+ */
+public class ExactRowCounter {
+    protected final Log logger = LogFactory.getLog(getClass());
+
+    private static final Pattern TABLE_NAME = Pattern.compile("[A-Za-z_][A-Za-z0-9_$.]*");
+
+    private final DataSource dataSource;
+
+    public ExactRowCounter(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    /**
+     * Returns the number of rows of the table, or null if it cannot be counted this way, e.g. because
+     * the table has another name than the one guessed for it.
+     *
+     * @throws SQLException if the count was still running when the timeout stopped it
+     */
+    public Long count(String tableName, long timeoutMillis) throws SQLException {
+        if (!TABLE_NAME.matcher(tableName).matches()) {
+            logger.debug("Not counting the rows of " + tableName + ", not a plain table name");
+            return null;
+        }
+        long start = System.currentTimeMillis();
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement()) {
+            // JDBC timeouts are whole seconds
+            statement.setQueryTimeout((int) Math.max(1, (timeoutMillis + 999) / 1000));
+            try (ResultSet resultSet = statement.executeQuery("select count(*) from " + tableName)) {
+                return resultSet.next() ? resultSet.getLong(1) : null;
+            }
+        } catch (SQLException e) {
+            if (System.currentTimeMillis() - start >= timeoutMillis) {
+                throw e;
+            }
+            logger.debug("Could not count the rows of " + tableName, e);
+            return null;
+        }
+    }
+}
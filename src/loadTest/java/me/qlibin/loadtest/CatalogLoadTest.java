@@ -0,0 +1,198 @@
+package me.qlibin.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import me.qlibin.entity.Book;
+import me.qlibin.entity.Reviewer;
+import me.qlibin.ingest.BookRecord;
+import me.qlibin.ingest.CatalogImporter;
+import me.qlibin.repository.BookRepository;
+import me.qlibin.repository.PublisherRepository;
+import me.qlibin.repository.ReviewerRepository;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.embedded.LocalServerPort;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.function.LongFunction;
+import java.util.stream.LongStream;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Drives the main read endpoints of the application, started on a random port against an in-memory H2
+ * seeded with a synthetic catalog, at a fixed arrival rate each (see OpenModelLoad), and compares the p99
+ * latencies with the baseline in loadtest-baseline.json: a scenario whose p99 is more than loadtest.tolerance
+ * (50% by default, and at least 1 ms) above its baseline in two runs in a row fails the build.
+ *
+ * ./gradlew loadTest [-Dloadtest.rate=400 -Dloadtest.duration-seconds=30 -Dloadtest.books=10000]
+ * ./gradlew loadTest -Dloadtest.update-baseline=true   (after an intended change, writes the new baseline)
+ *
+ * The baseline is only meaningful on the machine it was recorded on, so it is not part of the sources:
+ * the first run on a machine records it. The results of every run are written to
+ * build/reports/loadtest/results.json.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.datasource.url = jdbc:h2:mem:loadtest;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE",
+        "logging.level.root = WARN",
+        "logging.level.me.qlibin.loadtest = INFO"})
+public class CatalogLoadTest {
+    private static final Log logger = LogFactory.getLog(CatalogLoadTest.class);
+
+    private static final int BOOKS = Integer.getInteger("loadtest.books", 1000);
+    private static final double RATE = Double.parseDouble(System.getProperty("loadtest.rate", "200"));
+    private static final long DURATION_SECONDS = Long.getLong("loadtest.duration-seconds", 10);
+    private static final long WARMUP_SECONDS = Long.getLong("loadtest.warmup-seconds", 5);
+    private static final int WORKERS = Integer.getInteger("loadtest.workers", 32);
+    private static final int TIMEOUT_MILLIS = Integer.getInteger("loadtest.timeout-ms", 10000);
+    private static final double TOLERANCE = Double.parseDouble(System.getProperty("loadtest.tolerance", "0.5"));
+    private static final int REVIEWERS_PER_BOOK = 3;
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private CatalogImporter catalogImporter;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private PublisherRepository publisherRepository;
+
+    @Autowired
+    private ReviewerRepository reviewerRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    public void latenciesStayWithinTheBaseline() throws Exception {
+        seed();
+        OpenModelLoad load = new OpenModelLoad("http://localhost:" + port, WORKERS, TIMEOUT_MILLIS);
+        Random random = new Random(42);
+        Map<String, LongFunction<String>> scenarios = new LinkedHashMap<>();
+        // the whole catalog per request: a tenth of the rate of the lookups
+        scenarios.put("books", i -> "/books");
+        scenarios.put("book", i -> "/books/" + isbn(random.nextInt(BOOKS)));
+        scenarios.put("book-reviewers", i -> "/books/" + isbn(random.nextInt(BOOKS)) + "/reviewers");
+        List<Long> publisherIds = new ArrayList<>();
+        publisherRepository.findAll().forEach(publisher -> publisherIds.add(publisher.getId()));
+        scenarios.put("publisher", i -> "/publishers/" + publisherIds.get(random.nextInt(publisherIds.size())));
+
+        ObjectMapper objectMapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+        File baselineFile = new File(System.getProperty("loadtest.baseline", "loadtest-baseline.json"));
+        boolean updateBaseline = Boolean.getBoolean("loadtest.update-baseline") || !baselineFile.exists();
+        JsonNode baseline = updateBaseline ? objectMapper.createObjectNode() : objectMapper.readTree(baselineFile);
+
+        List<OpenModelLoad.Result> results = new ArrayList<>();
+        List<String> regressions = new ArrayList<>();
+        for (Map.Entry<String, LongFunction<String>> scenario : scenarios.entrySet()) {
+            double rate = "books".equals(scenario.getKey()) ? RATE / 10 : RATE;
+            load.run(scenario.getKey(), scenario.getValue(), rate, WARMUP_SECONDS);
+            OpenModelLoad.Result result = load.run(scenario.getKey(), scenario.getValue(), rate, DURATION_SECONDS);
+            logger.info(result);
+            JsonNode expected = baseline.path(scenario.getKey()).path("p99Millis");
+            double allowed = expected.isMissingNode() ? Double.MAX_VALUE
+                    : Math.max(expected.asDouble() * (1 + TOLERANCE), expected.asDouble() + 1);
+            if (result.getLatencyMillis(0.99) > allowed) {
+                // a single GC pause or a noisy neighbour is enough to move a p99 of a few thousand requests,
+                // so a regression only counts when a second run confirms it
+                result = load.run(scenario.getKey(), scenario.getValue(), rate, DURATION_SECONDS);
+                logger.info(result + "  (re-run)");
+                if (result.getLatencyMillis(0.99) > allowed) {
+                    regressions.add(String.format("%s: p99 %.2f ms, baseline %.2f ms, allowed %.2f ms",
+                            result.getName(), result.getLatencyMillis(0.99), expected.asDouble(), allowed));
+                }
+            }
+            assertTrue(result.getName() + " had errors", result.getErrors() == 0);
+            results.add(result);
+        }
+
+        ObjectNode report = objectMapper.createObjectNode();
+        results.forEach(result -> {
+            ObjectNode node = report.putObject(result.getName());
+            node.put("requests", result.getRequests());
+            node.put("errors", result.getErrors());
+            node.put("throughput", result.getThroughput());
+            node.put("p50Millis", result.getLatencyMillis(0.5));
+            node.put("p99Millis", result.getLatencyMillis(0.99));
+            node.put("p999Millis", result.getLatencyMillis(0.999));
+            node.put("maxMillis", result.getMaxLatencyMillis());
+            node.put("serviceTimeP99Millis", result.getServiceTimeMillis(0.99));
+        });
+        write(objectMapper, report, System.getProperty("loadtest.report", "build/reports/loadtest/results.json"));
+        if (updateBaseline) {
+            write(objectMapper, report, baselineFile.getPath());
+            logger.info("Wrote the baseline " + baselineFile);
+        }
+        if (!regressions.isEmpty()) {
+            fail("Latency regressions: " + regressions);
+        }
+    }
+
+    /**
+     * BOOKS books through the CatalogImporter, by 100 authors and 10 publishers, each with a few of 100 reviewers.
+     */
+    private void seed() {
+        Iterator<BookRecord> catalog = LongStream.range(0, BOOKS).mapToObj(n -> {
+            BookRecord record = new BookRecord();
+            record.setIsbn(isbn(n));
+            record.setTitle("Book " + n);
+            record.setDescription("Description of book " + n);
+            record.setAuthorFirstName("Author");
+            record.setAuthorLastName("No. " + (n % 100));
+            record.setPublisherName("Publisher No. " + (n % 10));
+            return record;
+        }).iterator();
+        catalogImporter.importBooks(catalog);
+        List<Reviewer> reviewers = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            reviewers.add(reviewerRepository.save(new Reviewer("Reviewer", "No. " + i)));
+        }
+        new TransactionTemplate(transactionManager).execute(status -> {
+            for (Book book : bookRepository.findAll()) {
+                List<Reviewer> bookReviewers = new ArrayList<>();
+                for (int i = 0; i < REVIEWERS_PER_BOOK; i++) {
+                    bookReviewers.add(reviewers.get((int) ((book.getId() + i) % reviewers.size())));
+                }
+                book.setReviewers(bookReviewers);
+            }
+            return null;
+        });
+    }
+
+    private static void write(ObjectMapper objectMapper, JsonNode json, String path) throws IOException {
+        File file = new File(path);
+        file.getAbsoluteFile().getParentFile().mkdirs();
+        objectMapper.writeValue(file, json);
+    }
+
+    /**
+     * The n-th ISBN of the synthetic catalog: the 979 prefix, n on nine digits and a valid check digit.
+     */
+    static String isbn(long n) {
+        long twelveDigits = 979_000_000_000L + n;
+        int sum = 0;
+        long rest = twelveDigits;
+        for (int position = 12; position >= 1; position--) {
+            int digit = (int) (rest % 10);
+            sum += digit * (position % 2 == 1 ? 1 : 3);
+            rest /= 10;
+        }
+        return String.valueOf(twelveDigits * 10 + (10 - sum % 10) % 10);
+    }
+}
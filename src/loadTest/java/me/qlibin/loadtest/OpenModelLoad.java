@@ -0,0 +1,197 @@
+package me.qlibin.loadtest;
+
+import me.qlibin.metrics.LogLinearHistogram;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongFunction;
+
+/**
+ * Sends requests at a fixed arrival rate, whatever the response times are (an open workload model):
+ * request i is due at start + i / rate, and is handed to the worker pool at that time even when all the
+ * workers are still busy, in which case it waits in the queue like a real client would wait for the server.
+ *
+ * The latency of a request is counted from the time it was due, not from the time it was actually sent.
+ * Counting from the send time would hide the waiting that a slow response causes to the requests behind it
+ * ("coordinated omission"): a load generator that waits for each response before sending the next request
+ * measures a single slow response once, while the users arriving during that time all saw it.
+ * Both are recorded; the service time is the one that omits the waiting.
+ *
+ * Every request has a connect and a read timeout, and one that times out or fails is an error, recorded
+ * at the latency it had when it was given up. The requests still queued a minute after the last one was due
+ * are given up as well, so a server that has stopped answering fails the run instead of hanging it.
+ */
+class OpenModelLoad {
+    private static final long DRAIN_SECONDS = 60;
+
+    private final String baseUrl;
+    private final int workers;
+    private final int timeoutMillis;
+
+    OpenModelLoad(String baseUrl, int workers, int timeoutMillis) {
+        this.baseUrl = baseUrl;
+        this.workers = workers;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * Sends rate requests per second for the given duration, the path of request i being path.apply(i),
+     * and waits for all of them to complete or to be given up.
+     *
+     * @throws IllegalStateException when requests are still running after their timeout
+     */
+    Result run(String name, LongFunction<String> path, double rate, long durationSeconds) throws InterruptedException {
+        Result result = new Result(name, rate);
+        ExecutorService pool = Executors.newFixedThreadPool(workers);
+        long intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / rate);
+        long start = System.nanoTime();
+        long end = start + TimeUnit.SECONDS.toNanos(durationSeconds);
+        for (long i = 0; ; i++) {
+            long due = start + i * intervalNanos;
+            if (due >= end) {
+                break;
+            }
+            long wait;
+            while ((wait = due - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            pool.execute(new Request(baseUrl + path.apply(i), due, result));
+        }
+        pool.shutdown();
+        if (!pool.awaitTermination(DRAIN_SECONDS, TimeUnit.SECONDS)) {
+            long now = System.nanoTime();
+            for (Runnable queued : pool.shutdownNow()) {
+                Request request = (Request) queued;
+                result.givenUp(TimeUnit.NANOSECONDS.toMicros(now - request.due));
+            }
+            // the requests being sent end with their read timeout at the latest
+            if (!pool.awaitTermination(timeoutMillis + 1000, TimeUnit.MILLISECONDS)) {
+                throw new IllegalStateException(name + ": requests still running after their timeout");
+            }
+        }
+        result.finished(System.nanoTime() - start);
+        return result;
+    }
+
+    private final class Request implements Runnable {
+        private final String url;
+        private final long due;
+        private final Result result;
+
+        private Request(String url, long due, Result result) {
+            this.url = url;
+            this.due = due;
+            this.result = result;
+        }
+
+        @Override
+        public void run() {
+            long sent = System.nanoTime();
+            boolean ok = get(url);
+            long done = System.nanoTime();
+            result.record(ok, TimeUnit.NANOSECONDS.toMicros(done - due), TimeUnit.NANOSECONDS.toMicros(done - sent));
+        }
+    }
+
+    /**
+     * False for an error status, and for a request that failed or timed out.
+     */
+    private boolean get(String url) {
+        try {
+            HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+            connection.setConnectTimeout(timeoutMillis);
+            connection.setReadTimeout(timeoutMillis);
+            connection.setRequestProperty("Accept", "application/json");
+            int status = connection.getResponseCode();
+            // the body is read to the end, so the connection can be kept alive and reused
+            try (InputStream body = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+                if (body != null) {
+                    byte[] buffer = new byte[8192];
+                    while (body.read(buffer) >= 0) {
+                        // discard
+                    }
+                }
+            }
+            return status < 400;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    static class Result {
+        private final String name;
+        private final double rate;
+        private final LogLinearHistogram latency = new LogLinearHistogram();
+        private final LogLinearHistogram serviceTime = new LogLinearHistogram();
+        private final AtomicLong errors = new AtomicLong();
+        private long elapsedNanos;
+
+        Result(String name, double rate) {
+            this.name = name;
+            this.rate = rate;
+        }
+
+        void record(boolean ok, long latencyMicros, long serviceTimeMicros) {
+            if (!ok) {
+                errors.incrementAndGet();
+            }
+            latency.record(latencyMicros);
+            serviceTime.record(serviceTimeMicros);
+        }
+
+        /** A request that was never sent has no service time. */
+        void givenUp(long latencyMicros) {
+            errors.incrementAndGet();
+            latency.record(latencyMicros);
+        }
+
+        void finished(long elapsedNanos) {
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        String getName() {
+            return name;
+        }
+
+        long getRequests() {
+            return latency.getCount();
+        }
+
+        long getErrors() {
+            return errors.get();
+        }
+
+        double getThroughput() {
+            return latency.getCount() / (elapsedNanos / 1e9);
+        }
+
+        /** Corrected for coordinated omission, in milliseconds. */
+        double getLatencyMillis(double quantile) {
+            return latency.getValueAtQuantile(quantile) / 1000.0;
+        }
+
+        double getMaxLatencyMillis() {
+            return latency.getMax() / 1000.0;
+        }
+
+        /** From the actual send time, in milliseconds. */
+        double getServiceTimeMillis(double quantile) {
+            return serviceTime.getValueAtQuantile(quantile) / 1000.0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%-20s %6.0f req/s offered %8.1f req/s done %6d requests %4d errors  " +
+                            "p50 %7.2f ms  p99 %7.2f ms  p99.9 %7.2f ms  max %7.2f ms  (service time p99 %7.2f ms)",
+                    name, rate, getThroughput(), getRequests(), getErrors(), getLatencyMillis(0.5), getLatencyMillis(0.99),
+                    getLatencyMillis(0.999), getMaxLatencyMillis(), getServiceTimeMillis(0.99));
+        }
+    }
+}
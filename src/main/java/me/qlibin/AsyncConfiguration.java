@@ -0,0 +1,30 @@
+package me.qlibin;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+@Configuration
+public class AsyncConfiguration {
+    public static final String BOOK_QUERY_EXECUTOR = "bookQueryExecutor";
+
+    /**
+     * The executor the asynchronous endpoints run their queries on, see AsyncBookController.
+     * Both the number of threads and the length of the queue are bounded: with a fixed pool no more than
+     * pool-size queries hit the database at once, however many requests come in, and once the queue is full
+     * new tasks are rejected with a TaskRejectedException (the default AbortPolicy) instead of waiting.
+     * That keeps a slow database from tying up the Tomcat connector threads and the sockets behind them.
+     */
+    @Bean(name = BOOK_QUERY_EXECUTOR)
+    public ThreadPoolTaskExecutor bookQueryExecutor(@Value("${cookbook.async.pool-size:8}") int poolSize,
+                                                    @Value("${cookbook.async.queue-capacity:100}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("book-query-");
+        executor.setWaitForTasksToCompleteOnShutdown(false);
+        return executor;
+    }
+}
@@ -1,14 +1,28 @@
 package me.qlibin;
 
+import me.qlibin.cache.BookIsbnCache;
 import me.qlibin.formatters.BookFormatter;
+import me.qlibin.metrics.RequestMetrics;
+import me.qlibin.readmodel.BookReadModel;
 import me.qlibin.repository.BookRepository;
+import me.qlibin.snapshot.CatalogSnapshots;
+import me.qlibin.web.BookConditionalGetInterceptor;
+import me.qlibin.web.ConcurrencyLimitFilter;
+import me.qlibin.web.ConcurrencyLimitProperties;
+import me.qlibin.web.RequestMetricsInterceptor;
+import me.qlibin.web.SmileHttpMessageConverter;
 import org.apache.catalina.filters.RemoteIpFilter;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
 import org.springframework.format.FormatterRegistry;
 import org.springframework.http.converter.ByteArrayHttpMessageConverter;
 import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
 import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurerAdapter;
 import org.springframework.web.servlet.i18n.LocaleChangeInterceptor;
@@ -16,6 +30,7 @@ import org.springframework.web.servlet.i18n.LocaleChangeInterceptor;
 import java.util.List;
 
 @Configuration
+@EnableConfigurationProperties(ConcurrencyLimitProperties.class)
 public class WebConfiguration extends WebMvcConfigurerAdapter {
     /**
      * The @Bean public RemoteIpFilter remoteIpFilter() {…} declaration simply creates a spring bean
@@ -30,6 +45,24 @@ public class WebConfiguration extends WebMvcConfigurerAdapter {
         return new RemoteIpFilter();
     }
 
+    /**
+     * The concurrency limits are checked before any other filter does work for the request,
+     * so that a request that is going to be rejected costs as little as possible.
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "cookbook.concurrency", name = "enabled", matchIfMissing = true)
+    public ConcurrencyLimitFilter concurrencyLimitFilter(ConcurrencyLimitProperties properties) {
+        return new ConcurrencyLimitFilter(properties);
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "cookbook.concurrency", name = "enabled", matchIfMissing = true)
+    public FilterRegistrationBean concurrencyLimitFilterRegistration(ConcurrencyLimitFilter concurrencyLimitFilter) {
+        FilterRegistrationBean registration = new FilterRegistrationBean(concurrencyLimitFilter);
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE);
+        return registration;
+    }
+
     /**
      * When it comes to configuring the Spring MVC internals, it is not as simple as just defining
      * a bunch of beans—at least not always. This is due to the need of providing a more fine-tuned mapping
@@ -53,7 +86,11 @@ public class WebConfiguration extends WebMvcConfigurerAdapter {
      */
     @Override
     public void addInterceptors(InterceptorRegistry registry) {
+        // first, so that it also times the requests the other interceptors stop
+        registry.addInterceptor(new RequestMetricsInterceptor(requestMetrics));
         registry.addInterceptor(localeChangeInterceptor());
+        registry.addInterceptor(new BookConditionalGetInterceptor(bookRepository, bookIsbnCache, catalogSnapshots))
+                .addPathPatterns("/books/*", "/books/*/reviewers");
     }
 
     /**
@@ -96,9 +133,34 @@ public class WebConfiguration extends WebMvcConfigurerAdapter {
 //        converters.add(new ByteArrayHttpMessageConverter());
 //    }
 
+    /**
+     * The Smile converter is appended here rather than in configureMessageConverters, as only then it is
+     * certain to come after the JSON converter: for a client that accepts anything the first converter
+     * that can write the value wins, and that should stay JSON.
+     */
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        converters.add(new SmileHttpMessageConverter(jackson2ObjectMapperBuilder));
+    }
+
+    @Autowired
+    private Jackson2ObjectMapperBuilder jackson2ObjectMapperBuilder;
+
     @Autowired
     private BookRepository bookRepository;
 
+    @Autowired
+    private BookIsbnCache bookIsbnCache;
+
+    @Autowired
+    private BookReadModel bookReadModel;
+
+    @Autowired
+    private RequestMetrics requestMetrics;
+
+    @Autowired
+    private CatalogSnapshots catalogSnapshots;
+
     /**
      * The Formatter facility is aimed towards providing a similar functionality to PropertyEditors.
      * By registering our formatter with the FormatterRegistry in the overridden addFormatters method,
@@ -114,7 +176,16 @@ public class WebConfiguration extends WebMvcConfigurerAdapter {
      */
     @Override
     public void addFormatters(FormatterRegistry registry) {
-        registry.addFormatter(new BookFormatter(bookRepository));
+        registry.addFormatter(bookFormatter());
+    }
+
+    /**
+     * The formatter is a bean as well, so that AsyncBookController can resolve the identifiers
+     * off the request thread the same way the binding does.
+     */
+    @Bean
+    public BookFormatter bookFormatter() {
+        return new BookFormatter(bookReadModel, bookIsbnCache, catalogSnapshots);
     }
 
 }
@@ -0,0 +1,242 @@
+package me.qlibin.cache;
+
+import me.qlibin.dto.BookView;
+import me.qlibin.entity.Author;
+import me.qlibin.entity.Book;
+import me.qlibin.entity.Publisher;
+import me.qlibin.entity.Reviewer;
+import me.qlibin.events.EntityChangeEvent;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Bounded in-process ISBN to BookView near-cache in front of BookReadModel.
+ * The keys are the canonical ISBN-13 numbers, see Isbns.
+ *
+ * The entries are kept in access order, so when the cache is full the least recently used book is evicted,
+ * and every entry expires after a fixed time to live. Books are invalidated as soon as a transaction
+ * that saved or deleted them has been committed, see EntityChangeEvent.
+ *
+ * The loader is called outside of the lock, so a slow query never blocks the readers of other ISBNs.
+ * An invalidation that happens while a value is being loaded bumps the generation, and the stale
+ * value is then returned to its caller but not stored.
+ */
+@Component
+public class BookIsbnCache {
+
+    private final int maxSize;
+    private final long ttlNanos;
+
+    private final LinkedHashMap<Long, Entry> entries;
+    private final Map<Long, Long> isbnById = new HashMap<>();
+    private long generation;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong expirations = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    @Autowired
+    public BookIsbnCache(@Value("${cookbook.isbn-cache.max-size:10000}") int maxSize,
+                         @Value("${cookbook.isbn-cache.ttl-seconds:300}") long ttlSeconds) {
+        this.maxSize = maxSize;
+        this.ttlNanos = TimeUnit.SECONDS.toNanos(ttlSeconds);
+        this.entries = new LinkedHashMap<Long, Entry>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+                if (size() > BookIsbnCache.this.maxSize) {
+                    isbnById.remove(eldest.getValue().book.getId());
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns the cached book for the ISBN, or loads it with the given loader on a miss.
+     * Books that are not found are not cached.
+     */
+    public BookView get(long isbn, Function<Long, BookView> loader) {
+        long loadGeneration;
+        synchronized (this) {
+            Entry entry = entries.get(isbn);
+            if (entry != null) {
+                if (entry.expiresAt - System.nanoTime() > 0) {
+                    hits.incrementAndGet();
+                    return entry.book;
+                }
+                remove(isbn);
+                expirations.incrementAndGet();
+            }
+            misses.incrementAndGet();
+            loadGeneration = generation;
+        }
+        BookView book = loader.apply(isbn);
+        if (book != null) {
+            synchronized (this) {
+                if (loadGeneration == generation) {
+                    entries.put(isbn, new Entry(book, System.nanoTime() + ttlNanos));
+                    isbnById.put(book.getId(), isbn);
+                }
+            }
+        }
+        return book;
+    }
+
+    /**
+     * Returns the cached book without loading it and without counting a hit or a miss.
+     */
+    public synchronized BookView peek(long isbn) {
+        Entry entry = entries.get(isbn);
+        return entry != null && entry.expiresAt - System.nanoTime() > 0 ? entry.book : null;
+    }
+
+    public synchronized void invalidate(Book book) {
+        generation++;
+        invalidations.incrementAndGet();
+        // the ISBN itself may have been changed, so the entry is found through the id it was cached under
+        Long cachedIsbn = isbnById.get(book.getId());
+        if (cachedIsbn != null) {
+            remove(cachedIsbn);
+        }
+        if (book.getIsbn13() != null) {
+            remove(book.getIsbn13());
+        }
+    }
+
+    /**
+     * Drops every entry, for the changes that cannot be traced to particular books.
+     */
+    public synchronized void invalidateAll() {
+        generation++;
+        invalidations.incrementAndGet();
+        entries.clear();
+        isbnById.clear();
+    }
+
+    /**
+     * A BookView embeds the names of its author, publisher and reviewers, so changes to those
+     * invalidate the cache as well. They are rare enough for the whole cache to be dropped,
+     * rather than looking up the books they appear in.
+     */
+    @EventListener
+    public void onEntityChange(EntityChangeEvent event) {
+        if (event.isAbout(Book.class)) {
+            invalidate((Book) event.getEntity());
+        } else if (event.getKind() != EntityChangeEvent.Kind.INSERT
+                && (event.isAbout(Author.class) || event.isAbout(Publisher.class) || event.isAbout(Reviewer.class))) {
+            invalidateAll();
+        }
+    }
+
+    public Stats getStats() {
+        int size;
+        synchronized (this) {
+            size = entries.size();
+        }
+        return new Stats(size, maxSize, hits.get(), misses.get(), evictions.get(), expirations.get(), invalidations.get());
+    }
+
+    private void remove(Long isbn) {
+        Entry removed = entries.remove(isbn);
+        if (removed != null) {
+            isbnById.remove(removed.book.getId());
+        }
+    }
+
+    /**
+     * Expired entries are dropped on access anyway; the periodic purge only gives their memory back
+     * for the ISBNs that are never asked for again.
+     */
+    @Scheduled(fixedDelayString = "${cookbook.isbn-cache.purge-interval-ms:60000}")
+    public synchronized void purgeExpired() {
+        long now = System.nanoTime();
+        for (Iterator<Entry> it = entries.values().iterator(); it.hasNext(); ) {
+            Entry entry = it.next();
+            if (entry.expiresAt - now <= 0) {
+                isbnById.remove(entry.book.getId());
+                it.remove();
+                expirations.incrementAndGet();
+            }
+        }
+    }
+
+    private static final class Entry {
+        private final BookView book;
+        private final long expiresAt;
+
+        private Entry(BookView book, long expiresAt) {
+            this.book = book;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    public static class Stats {
+        private final int size;
+        private final int maxSize;
+        private final long hits;
+        private final long misses;
+        private final long evictions;
+        private final long expirations;
+        private final long invalidations;
+
+        public Stats(int size, int maxSize, long hits, long misses, long evictions, long expirations, long invalidations) {
+            this.size = size;
+            this.maxSize = maxSize;
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+            this.expirations = expirations;
+            this.invalidations = invalidations;
+        }
+
+        public int getSize() {
+            return size;
+        }
+
+        public int getMaxSize() {
+            return maxSize;
+        }
+
+        public long getHits() {
+            return hits;
+        }
+
+        public long getMisses() {
+            return misses;
+        }
+
+        public long getEvictions() {
+            return evictions;
+        }
+
+        public long getExpirations() {
+            return expirations;
+        }
+
+        public long getInvalidations() {
+            return invalidations;
+        }
+
+        public double getHitRatio() {
+            long requests = hits + misses;
+            return requests == 0 ? 0.0 : (double) hits / requests;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package me.qlibin.cache;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.SecondLevelCacheStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManagerFactory;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The hit ratio and the size of every region of the Hibernate second-level cache (see ehcache.xml),
+ * and of the query cache, as counted by Hibernate since startup.
+ * Requires hibernate.generate_statistics, see application.properties.
+ */
+@Component
+public class SecondLevelCacheStats {
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    @PostConstruct
+    public void init() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    public Map<String, Region> getRegions() {
+        Map<String, Region> regions = new LinkedHashMap<>();
+        String[] names = statistics.getSecondLevelCacheRegionNames();
+        Arrays.sort(names);
+        for (String name : names) {
+            SecondLevelCacheStatistics region = statistics.getSecondLevelCacheStatistics(name);
+            if (region != null) {
+                regions.put(name, new Region(region.getHitCount(), region.getMissCount(), region.getPutCount(),
+                        region.getElementCountInMemory()));
+            }
+        }
+        return regions;
+    }
+
+    public Region getQueryCache() {
+        return new Region(statistics.getQueryCacheHitCount(), statistics.getQueryCacheMissCount(),
+                statistics.getQueryCachePutCount(), -1);
+    }
+
+    public static class Region {
+        private final long hits;
+        private final long misses;
+        private final long puts;
+        private final long size;
+
+        public Region(long hits, long misses, long puts, long size) {
+            this.hits = hits;
+            this.misses = misses;
+            this.puts = puts;
+            this.size = size;
+        }
+
+        public long getHits() {
+            return hits;
+        }
+
+        public long getMisses() {
+            return misses;
+        }
+
+        public long getPuts() {
+            return puts;
+        }
+
+        /** Entries currently in memory, -1 when unknown. */
+        public long getSize() {
+            return size;
+        }
+
+        public double getHitRatio() {
+            long lookups = hits + misses;
+            return lookups == 0 ? 0 : (double) hits / lookups;
+        }
+    }
+}
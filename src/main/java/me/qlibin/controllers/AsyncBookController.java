@@ -0,0 +1,113 @@
+package me.qlibin.controllers;
+
+import me.qlibin.AsyncConfiguration;
+import me.qlibin.cache.BookIsbnCache;
+import me.qlibin.dto.BookView;
+import me.qlibin.dto.ReviewerView;
+import me.qlibin.formatters.BookFormatter;
+import me.qlibin.formatters.Isbns;
+import me.qlibin.readmodel.BookReadModel;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.AsyncListenableTaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.concurrent.ListenableFuture;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+
+/**
+ * Asynchronous variants of the BookController lookups under /async/books.
+ *
+ * The handlers only submit the query to the bounded bookQueryExecutor and return a DeferredResult,
+ * so the Tomcat request thread goes back to the connector pool right away and is free to serve
+ * other endpoints while the database is slow. The response is written once the query has completed.
+ *
+ * Two things keep a slow database from piling up requests:
+ * - a request that cannot be queued is answered with 503 on the spot;
+ * - a query that does not complete within the timeout is cancelled and answered with 503.
+ * Both answers carry a Retry-After header.
+ */
+@RestController
+@RequestMapping("/async/books")
+public class AsyncBookController {
+    @Autowired
+    private BookReadModel bookReadModel;
+
+    @Autowired
+    private BookIsbnCache isbnCache;
+
+    @Autowired
+    private BookFormatter bookFormatter;
+
+    @Autowired
+    @Qualifier(AsyncConfiguration.BOOK_QUERY_EXECUTOR)
+    private AsyncListenableTaskExecutor bookQueryExecutor;
+
+    @Value("${cookbook.async.timeout-ms:5000}")
+    private long timeoutMillis;
+
+    @Value("${cookbook.async.retry-after-seconds:1}")
+    private int retryAfterSeconds;
+
+    @RequestMapping(value = "", method = RequestMethod.GET)
+    public DeferredResult<List<BookView>> getAllBooks() {
+        return submit(bookReadModel::findAll);
+    }
+
+    @RequestMapping(value = "/{isbn}", method = RequestMethod.GET)
+    public DeferredResult<BookView> getBook(@PathVariable String isbn) {
+        return submit(() -> {
+            long isbn13 = Isbns.toIsbn13(isbn);
+            return isbn13 != Isbns.INVALID ? isbnCache.get(isbn13, bookReadModel::findByIsbn13FromPrimary) : null;
+        });
+    }
+
+    /**
+     * The identifier is not bound to a Book by the BookFormatter here, as the binding happens on the
+     * request thread; the same formatter is called from the executor instead.
+     */
+    @RequestMapping(value = "/{isbn}/reviewers", method = RequestMethod.GET)
+    public DeferredResult<List<ReviewerView>> getReviewers(@PathVariable String isbn, Locale locale) {
+        return submit(() -> {
+            BookView book = bookFormatter.parse(isbn, locale);
+            return book != null ? book.getReviewers() : null;
+        });
+    }
+
+    private <T> DeferredResult<T> submit(Callable<T> query) {
+        DeferredResult<T> result = new DeferredResult<>(timeoutMillis);
+        // throws TaskRejectedException when the queue is full, see unavailable()
+        ListenableFuture<T> future = bookQueryExecutor.submitListenable(query);
+        future.addCallback(result::setResult, result::setErrorResult);
+        result.onTimeout(() -> {
+            // the 503 is set first, the cancellation would otherwise complete the result with a CancellationException
+            result.setErrorResult(unavailable());
+            future.cancel(true);
+        });
+        return result;
+    }
+
+    @ExceptionHandler(TaskRejectedException.class)
+    public ResponseEntity<Void> unavailable() {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds))
+                .build();
+    }
+
+    /**
+     * The synchronous endpoints get a 400 for a malformed identifier from the failed binding;
+     * here the BookFormatter throws from the executor, so the exception is mapped the same way.
+     */
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<Void> badIdentifier() {
+        return ResponseEntity.badRequest().build();
+    }
+}
@@ -1,31 +1,211 @@
 package me.qlibin.controllers;
 
-import me.qlibin.entity.Book;
-import me.qlibin.entity.Reviewer;
-import me.qlibin.repository.BookRepository;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import me.qlibin.cache.BookIsbnCache;
+import me.qlibin.dto.BookLookup;
+import me.qlibin.dto.BookView;
+import me.qlibin.dto.ReviewerView;
+import me.qlibin.formatters.Isbns;
+import me.qlibin.readmodel.BookReadModel;
+import me.qlibin.search.BookSearchIndex;
+import me.qlibin.snapshot.CatalogSnapshot;
+import me.qlibin.snapshot.CatalogSnapshots;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
 import org.springframework.util.StringUtils;
 import org.springframework.web.bind.WebDataBinder;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
+import javax.annotation.PostConstruct;
+import javax.servlet.http.HttpServletResponse;
 import java.beans.PropertyEditorSupport;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 @RestController
 @RequestMapping("/books")
 public class BookController {
+    public static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+
+    public static final String TOTAL_COUNT_HEADER = "X-Total-Count";
+
+    static final int DEFAULT_PAGE_SIZE = 50;
+    static final int MAX_PAGE_SIZE = 500;
+
+    @Autowired
+    private BookReadModel bookReadModel;
+
+    @Autowired
+    private BookIsbnCache isbnCache;
+
     @Autowired
-    private BookRepository bookRepository;
+    private BookSearchIndex searchIndex;
+
+    @Autowired
+    private CatalogSnapshots catalogSnapshots;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private ObjectWriter ndjsonWriter;
+
+    @PostConstruct
+    public void init() {
+        ndjsonWriter = objectMapper.writerFor(BookView.class)
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                .without(JsonGenerator.Feature.FLUSH_PASSED_TO_STREAM);
+    }
 
+    /**
+     * The handlers return BookViews from the BookReadModel rather than Book entities, so rendering a response
+     * never goes through managed entities, proxies or lazy collections; the JSON is the same.
+     * With cookbook.snapshot.enabled, they come from the in-memory CatalogSnapshot without any query.
+     */
     @RequestMapping(value = "", method = RequestMethod.GET)
-    public Iterable<Book> getAllBooks() {
-        return bookRepository.findAll();
+    public List<BookView> getAllBooks() {
+        CatalogSnapshot snapshot = catalogSnapshots.get();
+        return snapshot != null ? snapshot.findAll() : bookReadModel.findAll();
+    }
+
+    /**
+     * Keyset paginated listing: GET /books?after={lastSeenId}&size={n}.
+     * The link to the following page is returned in the Link header (RFC 5988), so the body stays
+     * a plain array of books; the absence of the header means the last page has been reached.
+     */
+    @RequestMapping(value = "", method = RequestMethod.GET, params = {"after", "!isbn"})
+    public ResponseEntity<List<BookView>> getBooksAfter(@RequestParam("after") long after,
+                                                        @RequestParam(value = "size", defaultValue = "" + DEFAULT_PAGE_SIZE) int size) {
+        int pageSize = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        List<BookView> books = bookReadModel.findAfter(after, pageSize);
+        HttpHeaders headers = new HttpHeaders();
+        if (books.size() == pageSize) {
+            String next = ServletUriComponentsBuilder.fromCurrentRequest()
+                    .replaceQueryParam("after", books.get(books.size() - 1).getId())
+                    .replaceQueryParam("size", pageSize)
+                    .build().toUriString();
+            headers.add(HttpHeaders.LINK, "<" + next + ">; rel=\"next\"");
+        }
+        return ResponseEntity.ok().headers(headers).body(books);
+    }
+
+    /**
+     * Streaming listing: GET /books with "Accept: application/x-ndjson" writes one JSON document per line
+     * while the rows are read from a database cursor. Nothing but the current batch of books is kept in memory.
+     *
+     * StreamingResponseBody is written from an MVC async thread after the handler has returned,
+     * so the read-only transaction that keeps the cursor open is started inside the callback, by BookReadModel.
+     */
+    @RequestMapping(value = "", method = RequestMethod.GET, produces = APPLICATION_NDJSON_VALUE)
+    public StreamingResponseBody streamAllBooks() {
+        return out -> {
+            bookReadModel.forEach(book -> writeNdjson(book, out));
+            out.flush();
+        };
+    }
+
+    private void writeNdjson(BookView book, OutputStream out) {
+        try {
+            ndjsonWriter.writeValue(out, book);
+            out.write('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Full-text search: GET /books/search?q={words}&page={n}&size={n}, ranked by BookSearchIndex.
+     * The body is the page of books, the total number of matches is in the X-Total-Count header,
+     * and the following page, if any, is linked like the keyset pages are.
+     */
+    @RequestMapping(value = "/search", method = RequestMethod.GET)
+    public ResponseEntity<List<BookView>> searchBooks(@RequestParam("q") String query,
+                                                      @RequestParam(value = "page", defaultValue = "0") int page,
+                                                      @RequestParam(value = "size", defaultValue = "" + DEFAULT_PAGE_SIZE) int size) {
+        int pageSize = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        int offset = Math.max(0, page) * pageSize;
+        BookSearchIndex.Result result = searchIndex.search(query, offset, pageSize);
+        HttpHeaders headers = new HttpHeaders();
+        headers.add(TOTAL_COUNT_HEADER, String.valueOf(result.getTotal()));
+        if (offset + pageSize < result.getTotal()) {
+            String next = ServletUriComponentsBuilder.fromCurrentRequest()
+                    .replaceQueryParam("page", Math.max(0, page) + 1)
+                    .replaceQueryParam("size", pageSize)
+                    .build().toUriString();
+            headers.add(HttpHeaders.LINK, "<" + next + ">; rel=\"next\"");
+        }
+        return ResponseEntity.ok().headers(headers).body(bookReadModel.findByIds(result.getBookIds()));
+    }
+
+    /**
+     * Multi-get: GET /books?isbn=978-1-78528-415-1,1785284150,... or POST /books/batch with a JSON array of ISBNs.
+     * Instead of one request per book, the ISBNs are normalized to ISBN-13, deduplicated, and resolved
+     * by BookReadModel with a single IN query. The body has one BookLookup per requested ISBN, in the
+     * order of the request, telling whether the ISBN was found, not found or is not a valid ISBN at all.
+     * At most MAX_PAGE_SIZE ISBNs per request. A multi-get is not paged, so an "after" next to the ISBNs is ignored.
+     */
+    @RequestMapping(value = "", method = RequestMethod.GET, params = "isbn")
+    public ResponseEntity<List<BookLookup>> getBooksByIsbn(@RequestParam("isbn") List<String> isbns) {
+        return lookup(isbns);
+    }
+
+    @RequestMapping(value = "/batch", method = RequestMethod.POST)
+    public ResponseEntity<List<BookLookup>> getBooksBatch(@RequestBody List<String> isbns) {
+        return lookup(isbns);
+    }
+
+    private ResponseEntity<List<BookLookup>> lookup(List<String> isbns) {
+        if (isbns.size() > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("At most " + MAX_PAGE_SIZE + " ISBNs can be looked up at once, not "
+                    + isbns.size());
+        }
+        long[] isbn13s = new long[isbns.size()];
+        Set<Long> distinct = new LinkedHashSet<>(isbns.size() * 2);
+        for (int i = 0; i < isbn13s.length; i++) {
+            String isbn = isbns.get(i);
+            isbn13s[i] = isbn != null ? Isbns.toIsbn13(isbn.trim()) : Isbns.INVALID;
+            if (isbn13s[i] != Isbns.INVALID) {
+                distinct.add(isbn13s[i]);
+            }
+        }
+        Map<Long, BookView> books = bookReadModel.findByIsbn13s(distinct);
+        List<BookLookup> lookups = new ArrayList<>(isbn13s.length);
+        for (int i = 0; i < isbn13s.length; i++) {
+            BookView book = books.get(isbn13s[i]);
+            BookLookup.Status status = isbn13s[i] == Isbns.INVALID ? BookLookup.Status.INVALID
+                    : book != null ? BookLookup.Status.FOUND : BookLookup.Status.NOT_FOUND;
+            lookups.add(new BookLookup(isbns.get(i), status, book));
+        }
+        return ResponseEntity.ok(lookups);
     }
 
     @RequestMapping(value = "/{isbn}", method =
             RequestMethod.GET)
-    public Book getBook(@PathVariable Isbn isbn) {
-        return bookRepository.findBookByIsbn(isbn.getIsbn());
+    public BookView getBook(@PathVariable Isbn isbn) {
+        long isbn13 = Isbns.toIsbn13(isbn.getIsbn());
+        if (isbn13 == Isbns.INVALID) {
+            return null;
+        }
+        CatalogSnapshot snapshot = catalogSnapshots.get();
+        return snapshot != null ? snapshot.findByIsbn13(isbn13) : isbnCache.get(isbn13, bookReadModel::findByIsbn13FromPrimary);
+    }
+
+    /**
+     * A 400 with the message of the exception, rendered by the error page like any other error.
+     */
+    @ExceptionHandler(IllegalArgumentException.class)
+    public void badRequest(IllegalArgumentException e, HttpServletResponse response) throws IOException {
+        response.sendError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
     }
 
     public class Isbn {
@@ -91,7 +271,7 @@ public class BookController {
     }
 
     @RequestMapping(value = "/{isbn}/reviewers", method = RequestMethod.GET)
-    public List<Reviewer> getReviewers(@PathVariable("isbn") Book book) {
+    public List<ReviewerView> getReviewers(@PathVariable("isbn") BookView book) {
         return book.getReviewers();
     }
 
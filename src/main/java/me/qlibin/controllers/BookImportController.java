@@ -0,0 +1,37 @@
+package me.qlibin.controllers;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import me.qlibin.ingest.BookRecordReaders;
+import me.qlibin.ingest.CatalogImporter;
+import me.qlibin.ingest.ImportReport;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Bulk import of books, read straight from the request body as it arrives:
+ * POST /books/import with a Content-Type of text/csv or application/x-ndjson.
+ */
+@RestController
+@RequestMapping("/books/import")
+public class BookImportController {
+    @Autowired
+    private CatalogImporter catalogImporter;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @RequestMapping(value = "", method = RequestMethod.POST, consumes = "text/csv")
+    public ImportReport importCsv(InputStream body) throws IOException {
+        return catalogImporter.importBooks(BookRecordReaders.csv(body));
+    }
+
+    @RequestMapping(value = "", method = RequestMethod.POST, consumes = BookController.APPLICATION_NDJSON_VALUE)
+    public ImportReport importNdjson(InputStream body) throws IOException {
+        return catalogImporter.importBooks(BookRecordReaders.ndjson(body, objectMapper));
+    }
+}
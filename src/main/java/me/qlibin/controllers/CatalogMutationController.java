@@ -0,0 +1,72 @@
+package me.qlibin.controllers;
+
+import me.qlibin.writebehind.CatalogMutation;
+import me.qlibin.writebehind.WriteBehindQueue;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.concurrent.ListenableFuture;
+import org.springframework.util.concurrent.ListenableFutureCallback;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.util.Map;
+
+/**
+ * Catalog edits through the WriteBehindQueue: PATCH /catalog/{type}/{id} with a JSON object of the new
+ * property values, e.g. PATCH /catalog/book/1 {"title": "..."}, where the type is book, author or publisher.
+ *
+ * By default the edit is only queued, and answered with 202 Accepted. With ?wait=true the response
+ * is held (asynchronously, as a DeferredResult) until the transaction that wrote the edit has committed,
+ * and is 204 No Content, or 409 Conflict if it could not be written. A full queue is answered with 503.
+ */
+@RestController
+@RequestMapping("/catalog")
+public class CatalogMutationController {
+    @Autowired
+    private WriteBehindQueue writeBehindQueue;
+
+    @Value("${cookbook.async.retry-after-seconds:1}")
+    private int retryAfterSeconds;
+
+    @RequestMapping(value = "/{type}/{id}", method = RequestMethod.PATCH)
+    public DeferredResult<ResponseEntity<Void>> mutate(@PathVariable String type, @PathVariable Long id,
+                                                       @RequestBody Map<String, Object> changes,
+                                                       @RequestParam(value = "wait", defaultValue = "false") boolean wait)
+            throws InterruptedException {
+        ListenableFuture<Void> written = writeBehindQueue.submit(
+                new CatalogMutation(WriteBehindQueue.entityType(type), id, changes));
+        DeferredResult<ResponseEntity<Void>> result = new DeferredResult<>();
+        if (!wait) {
+            result.setResult(ResponseEntity.accepted().build());
+            return result;
+        }
+        written.addCallback(new ListenableFutureCallback<Void>() {
+            @Override
+            public void onSuccess(Void ignored) {
+                result.setResult(ResponseEntity.noContent().build());
+            }
+
+            @Override
+            public void onFailure(Throwable e) {
+                result.setResult(ResponseEntity.status(HttpStatus.CONFLICT).build());
+            }
+        });
+        return result;
+    }
+
+    @ExceptionHandler(TaskRejectedException.class)
+    public ResponseEntity<Void> unavailable() {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds))
+                .build();
+    }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<Void> badMutation() {
+        return ResponseEntity.badRequest().build();
+    }
+}
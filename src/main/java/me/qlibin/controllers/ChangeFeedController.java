@@ -0,0 +1,29 @@
+package me.qlibin.controllers;
+
+import me.qlibin.outbox.OutboxRelay;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * The change feed: GET /changes as Server-Sent Events, one event per committed insert, update or delete
+ * of a book, author, publisher or reviewer, named after the type and with the position as its id.
+ * Instead of polling /books and the Spring Data REST collections, a consumer reads the catalog once
+ * and then follows the changes.
+ *
+ * The feed starts after the position given by the Last-Event-ID header, which an EventSource sends by itself
+ * when it reconnects, or else by the "after" parameter; without either it starts with the next change.
+ */
+@RestController
+@RequestMapping("/changes")
+public class ChangeFeedController {
+    @Autowired
+    private OutboxRelay outboxRelay;
+
+    @RequestMapping(value = "", method = RequestMethod.GET, produces = "text/event-stream")
+    public SseEmitter getChanges(@RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId,
+                                 @RequestParam(value = "after", required = false) Long after) {
+        long from = lastEventId != null ? lastEventId : after != null ? after : outboxRelay.getLastPosition();
+        return outboxRelay.subscribe(from);
+    }
+}
@@ -0,0 +1,106 @@
+package me.qlibin.controllers;
+
+import me.qlibin.entity.Author;
+import me.qlibin.entity.Publisher;
+import me.qlibin.entity.Reviewer;
+import me.qlibin.repository.AuthorRepository;
+import me.qlibin.repository.PublisherRepository;
+import me.qlibin.repository.ReviewerRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.rest.core.config.RepositoryRestConfiguration;
+import org.springframework.data.rest.webmvc.PersistentEntityResource;
+import org.springframework.data.rest.webmvc.PersistentEntityResourceAssembler;
+import org.springframework.data.rest.webmvc.RepositoryRestController;
+import org.springframework.hateoas.Link;
+import org.springframework.hateoas.Resources;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Keyset paginated listings of the Spring Data REST collection resources: GET /authors?after={lastSeenId}&size={n},
+ * and the same for /publishers and /reviewers. Without the "after" parameter the requests are still served
+ * by Spring Data REST, with OFFSET pages and a total count.
+ *
+ * A @RepositoryRestController lives next to the Spring Data REST controllers, under the same base path,
+ * and its handlers can have a PersistentEntityResourceAssembler injected, so the entities are rendered
+ * exactly like Spring Data REST renders them. The page is a Slice: there is a "next" link while there are
+ * more rows, but no page metadata, as that would need the COUNT(*) this listing exists to avoid.
+ */
+@RepositoryRestController
+public class ReferenceDataController {
+
+    @Autowired
+    private AuthorRepository authorRepository;
+
+    @Autowired
+    private PublisherRepository publisherRepository;
+
+    @Autowired
+    private ReviewerRepository reviewerRepository;
+
+    @Autowired
+    private RepositoryRestConfiguration restConfiguration;
+
+    @RequestMapping(value = "/authors", method = RequestMethod.GET, params = "after")
+    @ResponseBody
+    public Resources<PersistentEntityResource> getAuthorsAfter(@RequestParam("after") long after,
+                                                                @RequestParam(value = "size", required = false) Integer size,
+                                                                PersistentEntityResourceAssembler assembler) {
+        Pageable page = seekPage(size);
+        return slice(authorRepository.findByIdGreaterThanOrderByIdAsc(after, page), Author::getId, page, assembler);
+    }
+
+    @RequestMapping(value = "/publishers", method = RequestMethod.GET, params = "after")
+    @ResponseBody
+    public Resources<PersistentEntityResource> getPublishersAfter(@RequestParam("after") long after,
+                                                                   @RequestParam(value = "size", required = false) Integer size,
+                                                                   PersistentEntityResourceAssembler assembler) {
+        Pageable page = seekPage(size);
+        return slice(publisherRepository.findByIdGreaterThanOrderByIdAsc(after, page), Publisher::getId, page, assembler);
+    }
+
+    @RequestMapping(value = "/reviewers", method = RequestMethod.GET, params = "after")
+    @ResponseBody
+    public Resources<PersistentEntityResource> getReviewersAfter(@RequestParam("after") long after,
+                                                                  @RequestParam(value = "size", required = false) Integer size,
+                                                                  PersistentEntityResourceAssembler assembler) {
+        Pageable page = seekPage(size);
+        return slice(reviewerRepository.findByIdGreaterThanOrderByIdAsc(after, page), Reviewer::getId, page, assembler);
+    }
+
+    /**
+     * Always the first page: the position is given by "after", not by an offset.
+     * The size is bounded like the Spring Data REST pages, see spring.data.rest.default-page-size and max-page-size.
+     */
+    private Pageable seekPage(Integer size) {
+        int pageSize = size != null ? size : restConfiguration.getDefaultPageSize();
+        return new PageRequest(0, Math.max(1, Math.min(pageSize, restConfiguration.getMaxPageSize())));
+    }
+
+    private <T> Resources<PersistentEntityResource> slice(Slice<T> slice, Function<T, Long> id, Pageable page,
+                                                          PersistentEntityResourceAssembler assembler) {
+        List<PersistentEntityResource> content = new ArrayList<>(slice.getNumberOfElements());
+        for (T entity : slice) {
+            content.add(assembler.toResource(entity));
+        }
+        List<Link> links = new ArrayList<>(2);
+        links.add(new Link(ServletUriComponentsBuilder.fromCurrentRequest().build().toUriString(), Link.REL_SELF));
+        if (slice.hasNext()) {
+            links.add(new Link(ServletUriComponentsBuilder.fromCurrentRequest()
+                    .replaceQueryParam("after", id.apply(slice.getContent().get(slice.getNumberOfElements() - 1)))
+                    .replaceQueryParam("size", page.getPageSize())
+                    .build().toUriString(), Link.REL_NEXT));
+        }
+        return new Resources<>(content, links);
+    }
+}
@@ -0,0 +1,149 @@
+package me.qlibin.controllers;
+
+import me.qlibin.cache.BookIsbnCache;
+import me.qlibin.cache.SecondLevelCacheStats;
+import me.qlibin.counters.EntityCounters;
+import me.qlibin.datasource.ReplicaRoutingDataSource;
+import me.qlibin.jdbc.StatementStatistics;
+import me.qlibin.metrics.RequestMetrics;
+import me.qlibin.snapshot.CatalogSnapshots;
+import me.qlibin.startup.StartupTimeline;
+import me.qlibin.web.AdaptiveConcurrencyLimit;
+import me.qlibin.web.ConcurrencyLimitFilter;
+import me.qlibin.writebehind.WriteBehindQueue;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.test.bookpubstarter.dbcount.DbCountRunner;
+import org.test.bookpubstarter.dbcount.DbCountSnapshot;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Local, read-only view of the runtime statistics of the application.
+ */
+@RestController
+@RequestMapping("/stats")
+public class StatsController {
+    @Autowired
+    private BookIsbnCache isbnCache;
+
+    @Autowired
+    private DbCountRunner dbCountRunner;
+
+    @Autowired
+    private EntityCounters entityCounters;
+
+    @Autowired
+    private RequestMetrics requestMetrics;
+
+    @Autowired
+    private SecondLevelCacheStats secondLevelCacheStats;
+
+    @Autowired
+    private StartupTimeline startupTimeline;
+
+    @Autowired
+    private CatalogSnapshots catalogSnapshots;
+
+    @Autowired
+    private WriteBehindQueue writeBehindQueue;
+
+    /**
+     * Only there when read replicas are configured, see ReplicaRoutingConfiguration.
+     */
+    @Autowired(required = false)
+    private ReplicaRoutingDataSource replicaRoutingDataSource;
+
+    /**
+     * Not there when cookbook.jdbc.instrumentation is false.
+     */
+    @Autowired(required = false)
+    private StatementStatistics statementStatistics;
+
+    /**
+     * Not there when cookbook.concurrency.enabled is false.
+     */
+    @Autowired(required = false)
+    private ConcurrencyLimitFilter concurrencyLimitFilter;
+
+    @RequestMapping(value = "/isbn-cache", method = RequestMethod.GET)
+    public BookIsbnCache.Stats getIsbnCacheStats() {
+        return isbnCache.getStats();
+    }
+
+    /**
+     * The regions of the Hibernate second-level cache by name, and the query cache.
+     */
+    @RequestMapping(value = "/l2-cache", method = RequestMethod.GET)
+    public Map<String, Object> getSecondLevelCacheStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("regions", secondLevelCacheStats.getRegions());
+        stats.put("queryCache", secondLevelCacheStats.getQueryCache());
+        return stats;
+    }
+
+    @RequestMapping(value = "/counts", method = RequestMethod.GET)
+    public DbCountSnapshot getCounts() {
+        return dbCountRunner.getSnapshot();
+    }
+
+    @RequestMapping(value = "/entities", method = RequestMethod.GET)
+    public Map<String, Long> getEntityCounts() {
+        return entityCounters.getAll();
+    }
+
+    /**
+     * Per-handler request latency, status and response size, in the Prometheus text format.
+     */
+    @RequestMapping(value = "/latency", method = RequestMethod.GET, produces = RequestMetrics.CONTENT_TYPE)
+    public String getLatency() {
+        return requestMetrics.toPrometheusText();
+    }
+
+    /**
+     * The SQL statements that took the most time in total, with their execution counts and times.
+     */
+    @RequestMapping(value = "/sql", method = RequestMethod.GET)
+    public List<StatementStatistics.Entry> getSqlStatements(@RequestParam(value = "limit", defaultValue = "20") int limit) {
+        return statementStatistics != null ? statementStatistics.getTop(limit) : Collections.emptyList();
+    }
+
+    @RequestMapping(value = "/startup", method = RequestMethod.GET)
+    public StartupTimeline.Report getStartup() {
+        return startupTimeline.getReport();
+    }
+
+    @RequestMapping(value = "/snapshot", method = RequestMethod.GET)
+    public CatalogSnapshots.Stats getSnapshotStats() {
+        return catalogSnapshots.getStats();
+    }
+
+    @RequestMapping(value = "/write-behind", method = RequestMethod.GET)
+    public WriteBehindQueue.Stats getWriteBehindStats() {
+        return writeBehindQueue.getStats();
+    }
+
+    /**
+     * The current limit, the requests in flight and the accepted, rejected and failed requests of each endpoint group.
+     */
+    @RequestMapping(value = "/concurrency", method = RequestMethod.GET)
+    public Map<String, AdaptiveConcurrencyLimit.Stats> getConcurrencyLimits() {
+        Map<String, AdaptiveConcurrencyLimit.Stats> stats = new LinkedHashMap<>();
+        if (concurrencyLimitFilter != null) {
+            concurrencyLimitFilter.getLimits().forEach((group, limit) -> stats.put(group, limit.getStats()));
+        }
+        return stats;
+    }
+
+    @RequestMapping(value = "/replicas", method = RequestMethod.GET)
+    public Map<String, ReplicaRoutingDataSource.ReplicaStatus> getReplicas() {
+        return replicaRoutingDataSource != null
+                ? replicaRoutingDataSource.getReplicaStatus() : Collections.emptyMap();
+    }
+}
@@ -0,0 +1,119 @@
+package me.qlibin.counters;
+
+import me.qlibin.entity.Author;
+import me.qlibin.entity.Book;
+import me.qlibin.entity.Publisher;
+import me.qlibin.entity.Reviewer;
+import me.qlibin.events.EntityChangeEvent;
+import me.qlibin.repository.AuthorRepository;
+import me.qlibin.repository.BookRepository;
+import me.qlibin.repository.PublisherRepository;
+import me.qlibin.repository.ReviewerRepository;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory number of rows of each entity, so nobody has to run a COUNT(*) to know it.
+ *
+ * The counters are seeded with one count per table when the application starts, and then follow
+ * the committed inserts and deletes reported by EntityChangeEvent. Changes that bypass Hibernate,
+ * such as bulk JPQL or plain JDBC statements, are not seen, so the counters are reconciled
+ * with the database once in a while. A reconciliation can be off by the changes that commit
+ * while its count query is running; they are corrected by the next one.
+ */
+@Component
+public class EntityCounters {
+    private final Log logger = LogFactory.getLog(getClass());
+
+    @Autowired
+    private BookRepository bookRepository;
+    @Autowired private AuthorRepository authorRepository;
+    @Autowired private PublisherRepository publisherRepository;
+    @Autowired private ReviewerRepository reviewerRepository;
+
+    private final Map<Class<?>, Counter> counters = new LinkedHashMap<>();
+
+    @PostConstruct
+    public void seed() {
+        counters.put(Book.class, new Counter(bookRepository));
+        counters.put(Author.class, new Counter(authorRepository));
+        counters.put(Publisher.class, new Counter(publisherRepository));
+        counters.put(Reviewer.class, new Counter(reviewerRepository));
+        counters.values().forEach(Counter::reconcile);
+    }
+
+    @EventListener
+    public void onEntityChange(EntityChangeEvent event) {
+        Counter counter = counters.get(event.getEntity().getClass());
+        if (counter == null) {
+            return;
+        }
+        if (event.getKind() == EntityChangeEvent.Kind.INSERT) {
+            counter.value.incrementAndGet();
+        } else if (event.getKind() == EntityChangeEvent.Kind.DELETE) {
+            counter.value.decrementAndGet();
+        }
+    }
+
+    /**
+     * Adds the given number of rows that were inserted without going through Hibernate.
+     */
+    public void add(Class<?> entityClass, long rows) {
+        counter(entityClass).value.addAndGet(rows);
+    }
+
+    @Scheduled(initialDelayString = "${cookbook.counters.reconcile-interval-ms:3600000}",
+            fixedDelayString = "${cookbook.counters.reconcile-interval-ms:3600000}")
+    public void reconcile() {
+        counters.forEach((entityClass, counter) -> {
+            long before = counter.value.get();
+            long after = counter.reconcile();
+            if (before != after) {
+                logger.info(String.format("%s counter reconciled from %d to %d", entityClass.getSimpleName(), before, after));
+            }
+        });
+    }
+
+    public long get(Class<?> entityClass) {
+        return counter(entityClass).value.get();
+    }
+
+    public Map<String, Long> getAll() {
+        Map<String, Long> all = new LinkedHashMap<>();
+        counters.forEach((entityClass, counter) -> all.put(entityClass.getSimpleName(), counter.value.get()));
+        return all;
+    }
+
+    private Counter counter(Class<?> entityClass) {
+        Counter counter = counters.get(entityClass);
+        if (counter == null) {
+            throw new IllegalArgumentException("No counter for " + entityClass.getName());
+        }
+        return counter;
+    }
+
+    private static final class Counter {
+        private final CrudRepository<?, ?> repository;
+        private final AtomicLong value = new AtomicLong();
+
+        private Counter(CrudRepository<?, ?> repository) {
+            this.repository = repository;
+        }
+
+        private long reconcile() {
+            long count = repository.count();
+            value.set(count);
+            return count;
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package me.qlibin.datasource;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceBuilder;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Replaces the DataSource Spring Boot would configure from spring.datasource.* with one that routes
+ * read-only transactions to the replicas, as soon as one is configured, e.g.:
+ *
+ * cookbook.routing.replicas[0].url = jdbc:h2:tcp://replica-host/~/dev/test/h2_test_db
+ * cookbook.routing.replicas[0].username = sa
+ *
+ * The primary is still built from spring.datasource.*, so nothing changes for the writes.
+ *
+ * The LazyConnectionDataSourceProxy in front of the router matters: JpaTransactionManager asks for
+ * the connection when the transaction begins, before Spring has flagged it read-only,
+ * and the proxy defers getting the actual connection until the first statement is run.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "cookbook.routing", name = "replicas[0].url")
+@EnableConfigurationProperties(ReplicaRoutingProperties.class)
+public class ReplicaRoutingConfiguration {
+
+    @Bean
+    public ReplicaRoutingDataSource replicaRoutingDataSource(DataSourceProperties dataSourceProperties,
+                                                             ReplicaRoutingProperties properties) {
+        DataSource primary = DataSourceBuilder.create()
+                .driverClassName(dataSourceProperties.determineDriverClassName())
+                .url(dataSourceProperties.determineUrl())
+                .username(dataSourceProperties.determineUsername())
+                .password(dataSourceProperties.determinePassword())
+                .build();
+        List<DataSource> replicas = properties.getReplicas().stream()
+                .map(replica -> DataSourceBuilder.create()
+                        .url(replica.getUrl())
+                        .username(replica.getUsername())
+                        .password(replica.getPassword())
+                        .build())
+                .collect(Collectors.toList());
+        return new ReplicaRoutingDataSource(primary, replicas, properties);
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(ReplicaRoutingDataSource replicaRoutingDataSource) {
+        return new LazyConnectionDataSourceProxy(replicaRoutingDataSource);
+    }
+
+    @Bean
+    public ReplicaMonitor replicaMonitor(ReplicaRoutingDataSource replicaRoutingDataSource) {
+        return new ReplicaMonitor(replicaRoutingDataSource);
+    }
+
+    public static class ReplicaMonitor {
+        private final ReplicaRoutingDataSource replicaRoutingDataSource;
+
+        ReplicaMonitor(ReplicaRoutingDataSource replicaRoutingDataSource) {
+            this.replicaRoutingDataSource = replicaRoutingDataSource;
+        }
+
+        @Scheduled(fixedDelayString = "${cookbook.routing.check-interval-millis:1000}")
+        public void beat() {
+            replicaRoutingDataSource.writeHeartbeat();
+            replicaRoutingDataSource.checkReplicas();
+        }
+    }
+}
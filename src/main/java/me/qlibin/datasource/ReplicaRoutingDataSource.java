@@ -0,0 +1,222 @@
+package me.qlibin.datasource;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sends the connections of read-only transactions (@Transactional(readOnly = true)) to a read replica,
+ * round-robin, and everything else to the primary.
+ *
+ * A replica only gets reads while it is healthy and not too far behind the primary. To know how far
+ * behind it is, a heartbeat timestamp is written to the primary at a fixed interval; the replica
+ * receives it through replication like any other row, and its lag is the age of the heartbeat it has.
+ * When no replica qualifies, or a replica refuses a connection, the reads fail over to the primary.
+ *
+ * Reads whose result outlives the request, the fills of BookIsbnCache and the refreshes of the catalog snapshot,
+ * must see the changes that triggered them, so they run in read-write transactions and go to the primary,
+ * see BookReadModel.
+ *
+ * The routing decision is made when the connection is requested, which has to be after the transaction
+ * has been flagged read-only; that is why this DataSource is used behind a LazyConnectionDataSourceProxy,
+ * see ReplicaRoutingConfiguration.
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+    private static final Log logger = LogFactory.getLog(ReplicaRoutingDataSource.class);
+
+    private static final String PRIMARY = "primary";
+
+    private final DataSource primary;
+    private final List<Replica> replicas = new ArrayList<>();
+    private final ReplicaRoutingProperties properties;
+    private final AtomicInteger next = new AtomicInteger();
+
+    public ReplicaRoutingDataSource(DataSource primary, List<DataSource> replicaDataSources,
+                                    ReplicaRoutingProperties properties) {
+        this.primary = primary;
+        this.properties = properties;
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(PRIMARY, primary);
+        for (int i = 0; i < replicaDataSources.size(); i++) {
+            Replica replica = new Replica("replica-" + i, replicaDataSources.get(i));
+            replicas.add(replica);
+            targets.put(replica.name, replica.dataSource);
+        }
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        super.afterPropertiesSet();
+        if (properties.getMaxLagMillis() > 0) {
+            JdbcTemplate jdbcTemplate = new JdbcTemplate(primary);
+            jdbcTemplate.execute("create table if not exists " + properties.getHeartbeatTable() +
+                    " (id int primary key, beat timestamp)");
+            if (jdbcTemplate.queryForObject("select count(*) from " + properties.getHeartbeatTable(), Long.class) == 0) {
+                jdbcTemplate.update("insert into " + properties.getHeartbeatTable() + " (id, beat) values (1, ?)",
+                        new Timestamp(System.currentTimeMillis()));
+            }
+        }
+        checkReplicas();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return PRIMARY;
+        }
+        Replica replica = nextAvailableReplica();
+        return replica != null ? replica.name : PRIMARY;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        Object key = determineCurrentLookupKey();
+        if (PRIMARY.equals(key)) {
+            return primary.getConnection();
+        }
+        Replica replica = replica(key);
+        try {
+            return replica.dataSource.getConnection();
+        } catch (SQLException e) {
+            replica.down(e);
+            return primary.getConnection();
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return determineTargetDataSource().getConnection(username, password);
+    }
+
+    private Replica nextAvailableReplica() {
+        int size = replicas.size();
+        int start = Math.abs(next.getAndIncrement() % size);
+        for (int i = 0; i < size; i++) {
+            Replica replica = replicas.get((start + i) % size);
+            if (replica.available) {
+                return replica;
+            }
+        }
+        return null;
+    }
+
+    private Replica replica(Object name) {
+        for (Replica replica : replicas) {
+            if (replica.name.equals(name)) {
+                return replica;
+            }
+        }
+        throw new IllegalStateException("Unknown replica " + name);
+    }
+
+    /**
+     * Writes the heartbeat to the primary; scheduled by ReplicaRoutingConfiguration.
+     */
+    public void writeHeartbeat() {
+        if (properties.getMaxLagMillis() > 0) {
+            new JdbcTemplate(primary).update("update " + properties.getHeartbeatTable() + " set beat = ? where id = 1",
+                    new Timestamp(System.currentTimeMillis()));
+        }
+    }
+
+    /**
+     * Checks the health and the lag of every replica; scheduled by ReplicaRoutingConfiguration.
+     */
+    public void checkReplicas() {
+        for (Replica replica : replicas) {
+            try {
+                JdbcTemplate jdbcTemplate = new JdbcTemplate(replica.dataSource);
+                if (properties.getMaxLagMillis() > 0) {
+                    Timestamp beat = jdbcTemplate.queryForObject("select beat from " +
+                            properties.getHeartbeatTable() + " where id = 1", Timestamp.class);
+                    replica.up(Math.max(0, System.currentTimeMillis() - beat.getTime()), properties.getMaxLagMillis());
+                } else {
+                    jdbcTemplate.queryForObject("select 1", Integer.class);
+                    replica.up(-1, 0);
+                }
+            } catch (RuntimeException e) {
+                replica.down(e);
+            }
+        }
+    }
+
+    /**
+     * The state of every replica, by name, as of the last check.
+     */
+    public Map<String, ReplicaStatus> getReplicaStatus() {
+        Map<String, ReplicaStatus> status = new LinkedHashMap<>();
+        replicas.forEach(replica -> status.put(replica.name,
+                new ReplicaStatus(replica.healthy, replica.available, replica.lagMillis)));
+        return status;
+    }
+
+    private static final class Replica {
+        private final String name;
+        private final DataSource dataSource;
+        private volatile boolean healthy;
+        private volatile boolean available;
+        private volatile long lagMillis = -1;
+
+        private Replica(String name, DataSource dataSource) {
+            this.name = name;
+            this.dataSource = dataSource;
+        }
+
+        private void up(long lagMillis, long maxLagMillis) {
+            boolean wasAvailable = available;
+            this.lagMillis = lagMillis;
+            healthy = true;
+            available = maxLagMillis <= 0 || lagMillis <= maxLagMillis;
+            if (wasAvailable && !available) {
+                logger.warn(String.format("%s is %d ms behind the primary, reads go to the primary", name, lagMillis));
+            } else if (!wasAvailable && available) {
+                logger.info(String.format("%s serves reads", name));
+            }
+        }
+
+        private void down(Exception e) {
+            if (healthy) {
+                logger.warn(String.format("%s is down, reads go to the primary: %s", name, e.getMessage()));
+            }
+            healthy = false;
+            available = false;
+        }
+    }
+
+    public static class ReplicaStatus {
+        private final boolean healthy;
+        private final boolean available;
+        private final long lagMillis;
+
+        public ReplicaStatus(boolean healthy, boolean available, long lagMillis) {
+            this.healthy = healthy;
+            this.available = available;
+            this.lagMillis = lagMillis;
+        }
+
+        public boolean isHealthy() {
+            return healthy;
+        }
+
+        /** Healthy and within the lag tolerance, i.e. serving reads. */
+        public boolean isAvailable() {
+            return available;
+        }
+
+        /** -1 when unknown. */
+        public long getLagMillis() {
+            return lagMillis;
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package me.qlibin.datasource;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@ConfigurationProperties(prefix = "cookbook.routing")
+public class ReplicaRoutingProperties {
+    /**
+     * Read replicas of the primary database configured with spring.datasource.*.
+     * Routing is only enabled when at least one is configured.
+     */
+    private List<Replica> replicas = new ArrayList<>();
+
+    /**
+     * Replication lag up to which a replica still serves reads, or 0 to not check the lag at all.
+     * The lag is only known to within checkIntervalMillis.
+     */
+    private long maxLagMillis = 5000;
+
+    /**
+     * Interval between two heartbeats written to the primary, and between two checks of the replicas.
+     */
+    private long checkIntervalMillis = 1000;
+
+    /**
+     * Table on the primary that the heartbeat is written to, and replicated from.
+     */
+    private String heartbeatTable = "replication_heartbeat";
+
+    public List<Replica> getReplicas() {
+        return replicas;
+    }
+
+    public void setReplicas(List<Replica> replicas) {
+        this.replicas = replicas;
+    }
+
+    public long getMaxLagMillis() {
+        return maxLagMillis;
+    }
+
+    public void setMaxLagMillis(long maxLagMillis) {
+        this.maxLagMillis = maxLagMillis;
+    }
+
+    public long getCheckIntervalMillis() {
+        return checkIntervalMillis;
+    }
+
+    public void setCheckIntervalMillis(long checkIntervalMillis) {
+        this.checkIntervalMillis = checkIntervalMillis;
+    }
+
+    public String getHeartbeatTable() {
+        return heartbeatTable;
+    }
+
+    public void setHeartbeatTable(String heartbeatTable) {
+        this.heartbeatTable = heartbeatTable;
+    }
+
+    public static class Replica {
+        private String url;
+        private String username;
+        private String password;
+
+        public String getUrl() {
+            return url;
+        }
+
+        public void setUrl(String url) {
+            this.url = url;
+        }
+
+        public String getUsername() {
+            return username;
+        }
+
+        public void setUsername(String username) {
+            this.username = username;
+        }
+
+        public String getPassword() {
+            return password;
+        }
+
+        public void setPassword(String password) {
+            this.password = password;
+        }
+    }
+}
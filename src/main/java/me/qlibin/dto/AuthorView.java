@@ -0,0 +1,43 @@
+package me.qlibin.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import java.util.Date;
+
+public class AuthorView {
+    private final Long id;
+    private final String firstName;
+    private final String lastName;
+    @JsonIgnore
+    private final Long version;
+    @JsonIgnore
+    private final Date lastModified;
+
+    public AuthorView(Long id, String firstName, String lastName, Long version, Date lastModified) {
+        this.id = id;
+        this.firstName = firstName;
+        this.lastName = lastName;
+        this.version = version;
+        this.lastModified = lastModified;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getFirstName() {
+        return firstName;
+    }
+
+    public String getLastName() {
+        return lastName;
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public Date getLastModified() {
+        return lastModified;
+    }
+}
@@ -0,0 +1,36 @@
+package me.qlibin.dto;
+
+/**
+ * The outcome of looking up one of the ISBNs of a batch: the ISBN exactly as the caller sent it,
+ * and the book, which is only there when the status is FOUND.
+ */
+public class BookLookup {
+    public enum Status {
+        FOUND,
+        NOT_FOUND,
+        /** Not an ISBN-10 or ISBN-13 with a valid check digit, see Isbns. */
+        INVALID
+    }
+
+    private final String isbn;
+    private final Status status;
+    private final BookView book;
+
+    public BookLookup(String isbn, Status status, BookView book) {
+        this.isbn = isbn;
+        this.status = status;
+        this.book = book;
+    }
+
+    public String getIsbn() {
+        return isbn;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public BookView getBook() {
+        return book;
+    }
+}
@@ -0,0 +1,78 @@
+package me.qlibin.dto;
+
+import java.util.Date;
+
+/**
+ * The identity and version of a book without any of its data,
+ * which is all a conditional request needs to be answered.
+ *
+ * A book is rendered together with its author, publisher and reviewers, so its version covers them as well:
+ * the version of the book, of its author and of its publisher, and the sum of the versions of its reviewers.
+ * Adding or removing a reviewer changes the version of the book itself, which owns the association,
+ * and renaming one raises the sum. The last modification is the latest of all of them.
+ */
+public class BookVersion {
+    private final Long id;
+    private final Long version;
+    private final Date lastModified;
+    private final Long authorVersion;
+    private final Long publisherVersion;
+    private final long reviewersVersion;
+
+    public BookVersion(Long id, Long version, Date lastModified,
+                       Long authorVersion, Date authorLastModified,
+                       Long publisherVersion, Date publisherLastModified,
+                       Long reviewersVersion, Date reviewersLastModified) {
+        this.id = id;
+        this.version = version;
+        this.lastModified = latest(latest(lastModified, authorLastModified),
+                latest(publisherLastModified, reviewersLastModified));
+        this.authorVersion = authorVersion;
+        this.publisherVersion = publisherVersion;
+        this.reviewersVersion = reviewersVersion != null ? reviewersVersion : 0;
+    }
+
+    /**
+     * The version of a book as it was read, for answering from the same data the response is rendered from.
+     */
+    public static BookVersion of(BookView book) {
+        long reviewersVersion = 0;
+        Date reviewersLastModified = null;
+        for (ReviewerView reviewer : book.getReviewers()) {
+            reviewersVersion += reviewer.getVersion() != null ? reviewer.getVersion() : 0;
+            reviewersLastModified = latest(reviewersLastModified, reviewer.getLastModified());
+        }
+        AuthorView author = book.getAuthor();
+        PublisherView publisher = book.getPublisher();
+        return new BookVersion(book.getId(), book.getVersion(), book.getLastModified(),
+                author != null ? author.getVersion() : null, author != null ? author.getLastModified() : null,
+                publisher != null ? publisher.getVersion() : null, publisher != null ? publisher.getLastModified() : null,
+                reviewersVersion, reviewersLastModified);
+    }
+
+    private static Date latest(Date one, Date other) {
+        return one == null || (other != null && other.after(one)) ? other : one;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public Date getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * The id and the versions identify the exact state of the book as rendered, but the tag is weak:
+     * the same state is sent as JSON or as Smile, which are equivalent but not the same bytes,
+     * so a cache must not use it for byte ranges or serve one representation in place of the other.
+     */
+    public String getETag() {
+        return "W/\"" + id + "." + version + "." + (authorVersion != null ? authorVersion : "-")
+                + "." + (publisherVersion != null ? publisherVersion : "-") + "." + reviewersVersion + "\"";
+    }
+}
@@ -0,0 +1,95 @@
+package me.qlibin.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * The read model of a book: exactly the columns the /books endpoints render, in the same JSON shape
+ * as the Book entity, plus the version data a conditional request needs: the version and modification date
+ * of the book and of the author, publisher and reviewers rendered with it, see BookVersion.of().
+ *
+ * Instances are created by the constructor expressions in BookRepository ("select new …"), so reading
+ * them creates no managed entities, proxies or lazy collections, and the persistence context stays empty:
+ * there is nothing to dirty-check at flush time and nothing to grow the first-level cache.
+ * The reviewers are the one collection, and are attached afterwards by BookReadModel.
+ */
+public class BookView {
+    private final Long id;
+    private final String isbn;
+    @JsonIgnore
+    private final Long isbn13;
+    private final String title;
+    private final String description;
+    @JsonIgnore
+    private final Long version;
+    @JsonIgnore
+    private final Date lastModified;
+    private final AuthorView author;
+    private final PublisherView publisher;
+    private List<ReviewerView> reviewers = Collections.emptyList();
+
+    public BookView(Long id, String isbn, Long isbn13, String title, String description,
+                    Long version, Date lastModified,
+                    Long authorId, String authorFirstName, String authorLastName,
+                    Long authorVersion, Date authorLastModified,
+                    Long publisherId, String publisherName, Long publisherVersion, Date publisherLastModified) {
+        this.id = id;
+        this.isbn = isbn;
+        this.isbn13 = isbn13;
+        this.title = title;
+        this.description = description;
+        this.version = version;
+        this.lastModified = lastModified;
+        this.author = authorId != null ? new AuthorView(authorId, authorFirstName, authorLastName,
+                authorVersion, authorLastModified) : null;
+        this.publisher = publisherId != null
+                ? new PublisherView(publisherId, publisherName, publisherVersion, publisherLastModified) : null;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getIsbn() {
+        return isbn;
+    }
+
+    public Long getIsbn13() {
+        return isbn13;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public Date getLastModified() {
+        return lastModified;
+    }
+
+    public AuthorView getAuthor() {
+        return author;
+    }
+
+    public PublisherView getPublisher() {
+        return publisher;
+    }
+
+    public List<ReviewerView> getReviewers() {
+        return reviewers;
+    }
+
+    public void setReviewers(List<ReviewerView> reviewers) {
+        this.reviewers = reviewers;
+    }
+}
@@ -0,0 +1,37 @@
+package me.qlibin.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import java.util.Date;
+
+public class PublisherView {
+    private final Long id;
+    private final String name;
+    @JsonIgnore
+    private final Long version;
+    @JsonIgnore
+    private final Date lastModified;
+
+    public PublisherView(Long id, String name, Long version, Date lastModified) {
+        this.id = id;
+        this.name = name;
+        this.version = version;
+        this.lastModified = lastModified;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public Date getLastModified() {
+        return lastModified;
+    }
+}
@@ -0,0 +1,53 @@
+package me.qlibin.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import java.util.Date;
+
+/**
+ * A reviewer of one particular book; the book id is only there to attach the row to its BookView.
+ */
+public class ReviewerView {
+    @JsonIgnore
+    private final Long bookId;
+    private final Long id;
+    private final String firstName;
+    private final String lastName;
+    @JsonIgnore
+    private final Long version;
+    @JsonIgnore
+    private final Date lastModified;
+
+    public ReviewerView(Long bookId, Long id, String firstName, String lastName, Long version, Date lastModified) {
+        this.bookId = bookId;
+        this.id = id;
+        this.firstName = firstName;
+        this.lastName = lastName;
+        this.version = version;
+        this.lastModified = lastModified;
+    }
+
+    public Long getBookId() {
+        return bookId;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getFirstName() {
+        return firstName;
+    }
+
+    public String getLastName() {
+        return lastName;
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public Date getLastModified() {
+        return lastModified;
+    }
+}
@@ -1,22 +1,51 @@
 package me.qlibin.entity;
 
-import com.fasterxml.jackson.annotation.JsonBackReference;
-
-import javax.persistence.Entity;
-import javax.persistence.GeneratedValue;
-import javax.persistence.Id;
-import javax.persistence.OneToMany;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.springframework.data.annotation.LastModifiedDate;
+
+import javax.persistence.*;
+import java.util.Date;
 import java.util.List;
 
+/**
+ * Authors, publishers and reviewers are reference data: read with nearly every book and rarely changed.
+ * They are kept in the second-level cache, so loading a book or an author by id does not go to the database
+ * once they have been read. See ehcache.xml for the size and expiry of each region.
+ *
+ * READ_WRITE rather than READ_ONLY, as they can still be changed through Spring Data REST:
+ * an entry is locked while a transaction updates it, and readers go to the database until it commits.
+ */
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 public class Author {
     @Id
-    @GeneratedValue
+    @GeneratedValue(generator = IdGeneration.AUTHOR_SEQUENCE)
+    @GenericGenerator(name = IdGeneration.AUTHOR_SEQUENCE, strategy = IdGeneration.STRATEGY, parameters = {
+            @Parameter(name = "sequence_name", value = IdGeneration.AUTHOR_SEQUENCE),
+            @Parameter(name = "increment_size", value = "" + IdGeneration.INCREMENT_SIZE),
+            @Parameter(name = "optimizer", value = IdGeneration.OPTIMIZER)})
     private Long id;
+    @JsonIgnore
+    @Version
+    private Long version;
+    @JsonIgnore
+    @LastModifiedDate
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date lastModified;
     private String firstName;
     private String lastName;
 
-    @JsonBackReference
+    /**
+     * Not serialized: the book already carries its author and publisher, and the collection is lazy.
+     * A plain @JsonIgnore rather than a managed/back reference pair, which Jackson cannot deserialize
+     * when the back reference is a collection.
+     */
+    @JsonIgnore
     @OneToMany(mappedBy = "author")
     private List<Book> books;
 
@@ -37,6 +66,20 @@ public class Author {
         this.id = id;
     }
 
+    public Long getVersion() {
+        return version;
+    }
+
+    public Date getLastModified() {
+        return lastModified;
+    }
+
+    @PrePersist
+    @PreUpdate
+    void touch() {
+        lastModified = new Date();
+    }
+
     public String getFirstName() {
         return firstName;
     }
@@ -67,7 +110,6 @@ public class Author {
                 "id=" + id +
                 ", firstName='" + firstName + '\'' +
                 ", lastName='" + lastName + '\'' +
-                ", books=" + books +
                 '}';
     }
 }
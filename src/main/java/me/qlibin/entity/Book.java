@@ -1,28 +1,83 @@
 package me.qlibin.entity;
 
-import com.fasterxml.jackson.annotation.JsonManagedReference;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import me.qlibin.formatters.Isbns;
+import org.hibernate.annotations.BatchSize;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.springframework.data.annotation.LastModifiedDate;
 
 import javax.persistence.*;
+import java.util.Date;
 import java.util.List;
 
+/**
+ * The ISBN is the natural id of a book, so it is backed by a unique index instead of a table scan.
+ * The hottest lookup, BookRepository.findDetailedByIsbn13, goes through the canonical ISBN-13 form,
+ * which is kept next to the ISBN as it was entered, so "978-1-78528-415-1", "9781785284151"
+ * and the ISBN-10 "1785284150" all find the same book. As that is the only way to find a book by its ISBN,
+ * an ISBN without a valid check digit is rejected when it is set.
+ *
+ * Named entity graphs are the fetch plans a repository method can pick with @EntityGraph.
+ * The attributes listed in a graph are fetched with a join in the same SELECT as the book itself,
+ * instead of one extra SELECT per association per book (the classic N+1 problem).
+ */
 @Entity
+@Table(indexes = {
+        @Index(name = "ux_book_isbn", columnList = "isbn", unique = true),
+        @Index(name = "ux_book_isbn13", columnList = "isbn13", unique = true)})
+@NamedEntityGraphs({
+        @NamedEntityGraph(name = Book.SUMMARY_GRAPH, attributeNodes = {
+                @NamedAttributeNode("author"),
+                @NamedAttributeNode("publisher")}),
+        @NamedEntityGraph(name = Book.DETAIL_GRAPH, attributeNodes = {
+                @NamedAttributeNode("author"),
+                @NamedAttributeNode("publisher"),
+                @NamedAttributeNode("reviewers")})
+})
 public class Book {
+    /** Author and publisher, for reads that never touch the reviewers. */
+    public static final String SUMMARY_GRAPH = "Book.summary";
+    /** Author, publisher and reviewers, for reads that render the whole book. */
+    public static final String DETAIL_GRAPH = "Book.detail";
 
     @Id
-    @GeneratedValue
+    @GeneratedValue(generator = IdGeneration.BOOK_SEQUENCE)
+    @GenericGenerator(name = IdGeneration.BOOK_SEQUENCE, strategy = IdGeneration.STRATEGY, parameters = {
+            @Parameter(name = "sequence_name", value = IdGeneration.BOOK_SEQUENCE),
+            @Parameter(name = "increment_size", value = "" + IdGeneration.INCREMENT_SIZE),
+            @Parameter(name = "optimizer", value = IdGeneration.OPTIMIZER)})
     private Long id;
+    @JsonIgnore
+    @Version
+    private Long version;
+    @JsonIgnore
+    @LastModifiedDate
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date lastModified;
+    @Column(nullable = false)
     private String isbn;
+    @JsonIgnore
+    @Column(nullable = false)
+    private Long isbn13;
     private String title;
     private String description;
 
-    @JsonManagedReference
     @ManyToOne
     private Author author;
 
-    @JsonManagedReference
     @ManyToOne
     private Publisher publisher;
 
+    /**
+     * When reviewers are not part of the fetch plan (e.g. a cursor cannot join a collection),
+     * they are initialized for up to 100 books at once instead of one book at a time.
+     * The collection cache keeps the reviewer ids of a book, the reviewers themselves come from the Reviewer region.
+     */
+    @BatchSize(size = 100)
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
     @ManyToMany
     private List<Reviewer> reviewers;
 
@@ -30,7 +85,7 @@ public class Book {
     }
 
     public Book(String isbn, String title, Author author, Publisher publisher) {
-        this.isbn = isbn;
+        setIsbn(isbn);
         this.title = title;
         this.author = author;
         this.publisher = publisher;
@@ -44,12 +99,35 @@ public class Book {
         this.id = id;
     }
 
+    public Long getVersion() {
+        return version;
+    }
+
+    public Date getLastModified() {
+        return lastModified;
+    }
+
+    @PrePersist
+    @PreUpdate
+    void touch() {
+        lastModified = new Date();
+    }
+
     public String getIsbn() {
         return isbn;
     }
 
     public void setIsbn(String isbn) {
+        long canonical = Isbns.toIsbn13(isbn);
+        if (canonical == Isbns.INVALID) {
+            throw new IllegalArgumentException("'" + isbn + "' is not a valid ISBN");
+        }
         this.isbn = isbn;
+        this.isbn13 = canonical;
+    }
+
+    public Long getIsbn13() {
+        return isbn13;
     }
 
     public String getTitle() {
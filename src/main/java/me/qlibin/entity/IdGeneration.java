@@ -0,0 +1,24 @@
+package me.qlibin.entity;
+
+/**
+ * All the entities take their ids from a sequence of their own through Hibernate's "pooled-lo" optimizer:
+ * every call to the sequence returns the lowest id of a block of INCREMENT_SIZE ids that is then handed out
+ * in memory, so only one in INCREMENT_SIZE inserts costs an extra round trip for its id.
+ *
+ * The same blocks can be reserved outside of Hibernate (see PooledIdAllocator), as long as
+ * the sequence is never used with a different increment.
+ */
+public final class IdGeneration {
+    public static final String STRATEGY = "enhanced-sequence";
+    public static final String OPTIMIZER = "pooled-lo";
+    public static final int INCREMENT_SIZE = 50;
+
+    public static final String BOOK_SEQUENCE = "book_seq";
+    public static final String AUTHOR_SEQUENCE = "author_seq";
+    public static final String PUBLISHER_SEQUENCE = "publisher_seq";
+    public static final String REVIEWER_SEQUENCE = "reviewer_seq";
+    public static final String OUTBOX_SEQUENCE = "outbox_event_seq";
+
+    private IdGeneration() {
+    }
+}
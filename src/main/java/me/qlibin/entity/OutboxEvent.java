@@ -0,0 +1,69 @@
+package me.qlibin.entity;
+
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+
+import javax.persistence.*;
+import java.util.Date;
+
+/**
+ * A row of the transactional outbox: one committed insert, update or delete of a catalog entity.
+ * The rows are written with plain JDBC in the transaction of the change itself (see OutboxWriter), and are
+ * only mapped here so that the table and its sequence are part of the schema like every other one.
+ *
+ * The position is the offset of the change feed. It is not the id: ids are taken when the rows are written,
+ * and transactions don't commit in the order of their ids, so OutboxRelay numbers the rows once they are committed.
+ */
+@Entity
+@Table(indexes = @Index(name = "ux_outbox_event_position", columnList = "position", unique = true))
+public class OutboxEvent {
+    @Id
+    @GeneratedValue(generator = IdGeneration.OUTBOX_SEQUENCE)
+    @GenericGenerator(name = IdGeneration.OUTBOX_SEQUENCE, strategy = IdGeneration.STRATEGY, parameters = {
+            @Parameter(name = "sequence_name", value = IdGeneration.OUTBOX_SEQUENCE),
+            @Parameter(name = "increment_size", value = "" + IdGeneration.INCREMENT_SIZE),
+            @Parameter(name = "optimizer", value = IdGeneration.OPTIMIZER)})
+    private Long id;
+    /** Null until the row has been numbered by OutboxRelay. */
+    private Long position;
+    @Column(nullable = false)
+    private String entityType;
+    @Column(nullable = false)
+    private Long entityId;
+    @Column(nullable = false)
+    private String kind;
+    @Temporal(TemporalType.TIMESTAMP)
+    @Column(nullable = false)
+    private Date occurredAt;
+    /** The new values of the changed properties, as JSON; null for a delete. */
+    @Column(length = 4000)
+    private String changes;
+
+    public Long getId() {
+        return id;
+    }
+
+    public Long getPosition() {
+        return position;
+    }
+
+    public String getEntityType() {
+        return entityType;
+    }
+
+    public Long getEntityId() {
+        return entityId;
+    }
+
+    public String getKind() {
+        return kind;
+    }
+
+    public Date getOccurredAt() {
+        return occurredAt;
+    }
+
+    public String getChanges() {
+        return changes;
+    }
+}
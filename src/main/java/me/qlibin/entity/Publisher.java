@@ -1,22 +1,44 @@
 package me.qlibin.entity;
 
-import com.fasterxml.jackson.annotation.JsonBackReference;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.springframework.data.annotation.LastModifiedDate;
 
-import javax.persistence.Entity;
-import javax.persistence.GeneratedValue;
-import javax.persistence.Id;
-import javax.persistence.OneToMany;
+import javax.persistence.*;
+import java.util.Date;
 import java.util.List;
 
+/**
+ * Cached like Author. Publishers are renamed even less often, and a renamed publisher showing
+ * for a moment under its old name is harmless, so the cheaper NONSTRICT_READ_WRITE is enough:
+ * the entry is evicted after the commit instead of being locked during the transaction.
+ */
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.NONSTRICT_READ_WRITE)
 public class Publisher {
 
     @Id
-    @GeneratedValue
+    @GeneratedValue(generator = IdGeneration.PUBLISHER_SEQUENCE)
+    @GenericGenerator(name = IdGeneration.PUBLISHER_SEQUENCE, strategy = IdGeneration.STRATEGY, parameters = {
+            @Parameter(name = "sequence_name", value = IdGeneration.PUBLISHER_SEQUENCE),
+            @Parameter(name = "increment_size", value = "" + IdGeneration.INCREMENT_SIZE),
+            @Parameter(name = "optimizer", value = IdGeneration.OPTIMIZER)})
     private Long id;
+    @JsonIgnore
+    @Version
+    private Long version;
+    @JsonIgnore
+    @LastModifiedDate
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date lastModified;
     private String name;
 
-    @JsonBackReference
+    /** Not serialized, for the same reasons as Author.books. */
+    @JsonIgnore
     @OneToMany(mappedBy = "publisher")
     private List<Book> books;
 
@@ -40,6 +62,20 @@ public class Publisher {
         this.id = id;
     }
 
+    public Long getVersion() {
+        return version;
+    }
+
+    public Date getLastModified() {
+        return lastModified;
+    }
+
+    @PrePersist
+    @PreUpdate
+    void touch() {
+        lastModified = new Date();
+    }
+
     public String getName() {
         return name;
     }
@@ -61,7 +97,6 @@ public class Publisher {
         return "Publisher{" +
                 "id=" + id +
                 ", name='" + name + '\'' +
-                ", books=" + books +
                 '}';
     }
 }
@@ -1,14 +1,37 @@
 package me.qlibin.entity;
 
-import javax.persistence.Entity;
-import javax.persistence.GeneratedValue;
-import javax.persistence.Id;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.springframework.data.annotation.LastModifiedDate;
 
+import javax.persistence.*;
+import java.util.Date;
+
+/**
+ * Cached like Author, and versioned like it, so that renaming a reviewer changes
+ * the validators of the books they review.
+ */
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 public class Reviewer {
     @Id
-    @GeneratedValue
+    @GeneratedValue(generator = IdGeneration.REVIEWER_SEQUENCE)
+    @GenericGenerator(name = IdGeneration.REVIEWER_SEQUENCE, strategy = IdGeneration.STRATEGY, parameters = {
+            @Parameter(name = "sequence_name", value = IdGeneration.REVIEWER_SEQUENCE),
+            @Parameter(name = "increment_size", value = "" + IdGeneration.INCREMENT_SIZE),
+            @Parameter(name = "optimizer", value = IdGeneration.OPTIMIZER)})
     private Long id;
+    @JsonIgnore
+    @Version
+    private Long version;
+    @JsonIgnore
+    @LastModifiedDate
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date lastModified;
     private String firstName;
     private String lastName;
 
@@ -28,6 +51,20 @@ public class Reviewer {
         this.id = id;
     }
 
+    public Long getVersion() {
+        return version;
+    }
+
+    public Date getLastModified() {
+        return lastModified;
+    }
+
+    @PrePersist
+    @PreUpdate
+    void touch() {
+        lastModified = new Date();
+    }
+
     public String getFirstName() {
         return firstName;
     }
@@ -0,0 +1,50 @@
+package me.qlibin.events;
+
+import java.io.Serializable;
+
+/**
+ * Published through the ApplicationEventPublisher after a transaction that inserted, updated or deleted
+ * an entity has been committed, so listeners never react to changes that are later rolled back.
+ * Any bean can receive it with an @EventListener method taking this type as its argument.
+ */
+public class EntityChangeEvent {
+
+    public enum Kind {
+        INSERT, UPDATE, DELETE
+    }
+
+    private final Kind kind;
+    private final Object entity;
+    private final Serializable id;
+
+    public EntityChangeEvent(Kind kind, Object entity, Serializable id) {
+        this.kind = kind;
+        this.entity = entity;
+        this.id = id;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public Object getEntity() {
+        return entity;
+    }
+
+    public Serializable getId() {
+        return id;
+    }
+
+    public boolean isAbout(Class<?> entityClass) {
+        return entityClass.isInstance(entity);
+    }
+
+    @Override
+    public String toString() {
+        return "EntityChangeEvent{" +
+                "kind=" + kind +
+                ", entity=" + entity.getClass().getSimpleName() +
+                ", id=" + id +
+                '}';
+    }
+}
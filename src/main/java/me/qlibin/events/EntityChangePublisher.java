@@ -0,0 +1,70 @@
+package me.qlibin.events;
+
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.*;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManagerFactory;
+
+/**
+ * JPA entity listeners are instantiated by Hibernate itself, so they cannot have Spring beans injected.
+ * Instead, this Spring bean registers itself in the Hibernate EventListenerRegistry of the
+ * EntityManagerFactory and translates the post-commit entity events into Spring application events.
+ */
+@Component
+public class EntityChangePublisher implements PostCommitInsertEventListener,
+        PostCommitUpdateEventListener, PostCommitDeleteEventListener {
+    private static final long serialVersionUID = 1L;
+
+    @Autowired
+    private transient EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private transient ApplicationEventPublisher eventPublisher;
+
+    @PostConstruct
+    public void register() {
+        EventListenerRegistry registry = entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry().getService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.POST_COMMIT_INSERT, this);
+        registry.appendListeners(EventType.POST_COMMIT_UPDATE, this);
+        registry.appendListeners(EventType.POST_COMMIT_DELETE, this);
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        eventPublisher.publishEvent(new EntityChangeEvent(EntityChangeEvent.Kind.INSERT, event.getEntity(), event.getId()));
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        eventPublisher.publishEvent(new EntityChangeEvent(EntityChangeEvent.Kind.UPDATE, event.getEntity(), event.getId()));
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        eventPublisher.publishEvent(new EntityChangeEvent(EntityChangeEvent.Kind.DELETE, event.getEntity(), event.getId()));
+    }
+
+    @Override
+    public void onPostInsertCommitFailed(PostInsertEvent event) {
+    }
+
+    @Override
+    public void onPostUpdateCommitFailed(PostUpdateEvent event) {
+    }
+
+    @Override
+    public void onPostDeleteCommitFailed(PostDeleteEvent event) {
+    }
+
+    @Override
+    public boolean requiresPostCommitHanding(EntityPersister persister) {
+        return true;
+    }
+}
@@ -1,25 +1,47 @@
 package me.qlibin.formatters;
 
-import me.qlibin.entity.Book;
-import me.qlibin.repository.BookRepository;
+import me.qlibin.cache.BookIsbnCache;
+import me.qlibin.dto.BookView;
+import me.qlibin.readmodel.BookReadModel;
+import me.qlibin.snapshot.CatalogSnapshot;
+import me.qlibin.snapshot.CatalogSnapshots;
 import org.springframework.expression.ParseException;
 import org.springframework.format.Formatter;
 
 import java.util.Locale;
 
-public class BookFormatter implements Formatter<Book> {
-    private BookRepository repository;
-    public BookFormatter(BookRepository repository) {
-        this.repository = repository;
+/**
+ * The identifier is classified in memory before the repository is asked for anything:
+ * a valid ISBN-10 or ISBN-13 is looked up by its canonical ISBN-13, a plain number by the surrogate id,
+ * and anything else is rejected without a query. So a binding costs at most one query,
+ * and none at all when the ISBN is already in the BookIsbnCache, or when the books are served from
+ * the CatalogSnapshot.
+ */
+public class BookFormatter implements Formatter<BookView> {
+    private BookReadModel readModel;
+    private BookIsbnCache isbnCache;
+    private CatalogSnapshots catalogSnapshots;
+    public BookFormatter(BookReadModel readModel, BookIsbnCache isbnCache, CatalogSnapshots catalogSnapshots) {
+        this.readModel = readModel;
+        this.isbnCache = isbnCache;
+        this.catalogSnapshots = catalogSnapshots;
     }
     @Override
-    public Book parse(String bookIdentifier, Locale locale) throws ParseException {
-        Book book = repository.findBookByIsbn(bookIdentifier);
-        return book != null ? book : repository.findOne(Long.valueOf(bookIdentifier));
+    public BookView parse(String bookIdentifier, Locale locale) throws ParseException {
+        BookIdentifier identifier = BookIdentifier.parse(bookIdentifier);
+        CatalogSnapshot snapshot = catalogSnapshots.get();
+        switch (identifier.getType()) {
+            case ISBN:
+                return snapshot != null ? snapshot.findByIsbn13(identifier.getIsbn13())
+                        : isbnCache.get(identifier.getIsbn13(), readModel::findByIsbn13FromPrimary);
+            case ID:
+                return snapshot != null ? snapshot.findById(identifier.getId()) : readModel.findById(identifier.getId());
+            default:
+                throw new IllegalArgumentException("'" + bookIdentifier + "' is neither an ISBN nor a book id");
+        }
     }
     @Override
-    public String print(Book book, Locale locale) {
+    public String print(BookView book, Locale locale) {
         return book.getIsbn();
     }
 }
-
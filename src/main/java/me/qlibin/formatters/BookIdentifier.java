@@ -0,0 +1,75 @@
+package me.qlibin.formatters;
+
+/**
+ * The result of classifying the textual identifier of a book, which is either an ISBN
+ * (in its canonical ISBN-13 form), the numeric surrogate id of the book, or neither of them.
+ *
+ * A string that is both a valid ISBN and a plain number is taken for an ISBN,
+ * which is the interpretation BookFormatter has always tried first.
+ */
+public final class BookIdentifier {
+
+    public enum Type {
+        ISBN, ID, INVALID
+    }
+
+    private static final BookIdentifier INVALID = new BookIdentifier(Type.INVALID, Isbns.INVALID, null);
+
+    /** Longer numbers could overflow a long, and are not ids of any book anyway. */
+    private static final int MAX_ID_DIGITS = 18;
+
+    private final Type type;
+    private final long isbn13;
+    private final Long id;
+
+    private BookIdentifier(Type type, long isbn13, Long id) {
+        this.type = type;
+        this.isbn13 = isbn13;
+        this.id = id;
+    }
+
+    public static BookIdentifier parse(String text) {
+        if (text == null) {
+            return INVALID;
+        }
+        String trimmed = text.trim();
+        long isbn13 = Isbns.toIsbn13(trimmed);
+        if (isbn13 != Isbns.INVALID) {
+            return new BookIdentifier(Type.ISBN, isbn13, null);
+        }
+        if (isNumber(trimmed)) {
+            return new BookIdentifier(Type.ID, Isbns.INVALID, Long.valueOf(trimmed));
+        }
+        return INVALID;
+    }
+
+    private static boolean isNumber(String text) {
+        if (text.isEmpty() || text.length() > MAX_ID_DIGITS) {
+            return false;
+        }
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public long getIsbn13() {
+        return isbn13;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    @Override
+    public String toString() {
+        return type == Type.ISBN ? "ISBN " + isbn13 : type == Type.ID ? "id " + id : "invalid";
+    }
+}
@@ -0,0 +1,81 @@
+package me.qlibin.formatters;
+
+/**
+ * ISBN arithmetic that works on the characters directly, without regular expressions or intermediate strings,
+ * so a book identifier can be classified in memory before any query is sent to the database.
+ *
+ * Both ISBN-10 and ISBN-13 are accepted, with or without hyphens and spaces between the groups,
+ * and reduced to their canonical form: the 13 digits of the ISBN-13 as a long value.
+ */
+public final class Isbns {
+    public static final long INVALID = -1L;
+
+    /** Sum of the weighted digits of the 978 prefix (9*1 + 7*3 + 8*1) an ISBN-10 gets when converted. */
+    private static final int PREFIX_978_WEIGHTED_SUM = 38;
+
+    private Isbns() {
+    }
+
+    /**
+     * Returns the ISBN-13 of the given ISBN-10 or ISBN-13 as a long,
+     * or INVALID if the text is not a well-formed ISBN with a correct check digit.
+     */
+    public static long toIsbn13(CharSequence text) {
+        if (text == null) {
+            return INVALID;
+        }
+        int digits = 0;
+        long value = 0;
+        long first9 = 0;
+        int isbn10Sum = 0;
+        int isbn13Sum = 0;
+        int convertedSum = PREFIX_978_WEIGHTED_SUM;
+        boolean checkDigitX = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '-' || c == ' ') {
+                continue;
+            }
+            if (checkDigitX) {
+                return INVALID;
+            }
+            int digit;
+            if (c >= '0' && c <= '9') {
+                digit = c - '0';
+            } else if ((c == 'X' || c == 'x') && digits == 9) {
+                // X stands for 10 and is only allowed as the check digit of an ISBN-10
+                digit = 10;
+                checkDigitX = true;
+            } else {
+                return INVALID;
+            }
+            digits++;
+            if (digits > 13) {
+                return INVALID;
+            }
+            isbn10Sum += digit * (11 - Math.min(digits, 10));
+            isbn13Sum += digit * (digits % 2 == 1 ? 1 : 3);
+            if (digits <= 9) {
+                first9 = first9 * 10 + digit;
+                convertedSum += digit * (digits % 2 == 1 ? 3 : 1);
+            }
+            value = value * 10 + digit;
+        }
+        if (digits == 13) {
+            long prefix = value / 10_000_000_000L;
+            return (prefix == 978 || prefix == 979) && isbn13Sum % 10 == 0 ? value : INVALID;
+        }
+        if (digits == 10) {
+            if (isbn10Sum % 11 != 0) {
+                return INVALID;
+            }
+            int checkDigit = (10 - convertedSum % 10) % 10;
+            return (978_000_000_000L + first9) * 10 + checkDigit;
+        }
+        return INVALID;
+    }
+
+    public static boolean isValid(CharSequence text) {
+        return toIsbn13(text) != INVALID;
+    }
+}
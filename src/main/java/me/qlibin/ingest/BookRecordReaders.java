@@ -0,0 +1,127 @@
+package me.qlibin.ingest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Readers that turn a request body into a lazily parsed sequence of BookRecords,
+ * so an import never holds more than the current line in memory.
+ */
+public final class BookRecordReaders {
+
+    private BookRecordReaders() {
+    }
+
+    /**
+     * One JSON object per line, with the BookRecord property names as fields.
+     */
+    public static Iterator<BookRecord> ndjson(InputStream in, ObjectMapper objectMapper) throws IOException {
+        return objectMapper.readerFor(BookRecord.class).readValues(in);
+    }
+
+    /**
+     * RFC 4180 CSV with a header line naming the BookRecord properties, in any order.
+     * Fields may be quoted, but not span several lines.
+     */
+    public static Iterator<BookRecord> csv(InputStream in) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        String header = reader.readLine();
+        if (header == null) {
+            return Collections.emptyIterator();
+        }
+        List<String> columns = parseCsvLine(header.startsWith("\uFEFF") ? header.substring(1) : header);
+        return new Iterator<BookRecord>() {
+            private String next = readDataLine(reader);
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public BookRecord next() {
+                if (next == null) {
+                    throw new NoSuchElementException();
+                }
+                BookRecord record = toRecord(columns, parseCsvLine(next));
+                next = readDataLine(reader);
+                return record;
+            }
+        };
+    }
+
+    private static String readDataLine(BufferedReader reader) {
+        try {
+            String line;
+            do {
+                line = reader.readLine();
+            } while (line != null && line.trim().isEmpty());
+            return line;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static BookRecord toRecord(List<String> columns, List<String> values) {
+        BookRecord record = new BookRecord();
+        for (int i = 0; i < columns.size() && i < values.size(); i++) {
+            String value = values.get(i).isEmpty() ? null : values.get(i);
+            switch (columns.get(i).trim()) {
+                case "isbn":
+                    record.setIsbn(value);
+                    break;
+                case "title":
+                    record.setTitle(value);
+                    break;
+                case "description":
+                    record.setDescription(value);
+                    break;
+                case "authorFirstName":
+                    record.setAuthorFirstName(value);
+                    break;
+                case "authorLastName":
+                    record.setAuthorLastName(value);
+                    break;
+                case "publisherName":
+                    record.setPublisherName(value);
+                    break;
+                default:
+                    // unknown columns are ignored
+            }
+        }
+        return record;
+    }
+
+    static List<String> parseCsvLine(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"') {
+                    if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                        field.append('"');
+                        i++;
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+}
@@ -0,0 +1,238 @@
+package me.qlibin.ingest;
+
+import me.qlibin.counters.EntityCounters;
+import me.qlibin.entity.Author;
+import me.qlibin.entity.Book;
+import me.qlibin.entity.IdGeneration;
+import me.qlibin.entity.Publisher;
+import me.qlibin.events.EntityChangeEvent;
+import me.qlibin.formatters.Isbns;
+import me.qlibin.outbox.OutboxWriter;
+import me.qlibin.search.BookSearchIndex;
+import me.qlibin.snapshot.CatalogSnapshots;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.StringUtils;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManagerFactory;
+import java.sql.Timestamp;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bulk import of books that bypasses the persistence context: the records are read as a stream,
+ * authors and publishers are deduplicated in memory against the ones already in the catalog,
+ * and the rows are written with batched JDBC inserts, one transaction per chunk of records.
+ *
+ * Ids come from the entities' own sequences through PooledIdAllocator, so a chunk costs a handful of
+ * statements instead of an id fetch, an insert and a commit per row. A failure aborts the import,
+ * but the chunks committed before it stay in the catalog.
+ *
+ * Hibernate never sees these inserts, so the EntityCounters, the BookSearchIndex and the CatalogSnapshots are told
+ * about them explicitly, and the cached query results are evicted, as the query cache cannot know that the tables
+ * have changed.
+ * For the same reason the rows of the change feed are written here, in the transaction of the chunk, see OutboxWriter.
+ */
+@Service
+public class CatalogImporter {
+    private final Log logger = LogFactory.getLog(getClass());
+
+    private static final String INSERT_AUTHOR = "insert into author (id, version, last_modified, " +
+            "first_name, last_name) values (?, 0, ?, ?, ?)";
+    private static final String INSERT_PUBLISHER = "insert into publisher (id, version, last_modified, name) " +
+            "values (?, 0, ?, ?)";
+    private static final String INSERT_BOOK = "insert into book (id, version, last_modified, isbn, isbn13, title, " +
+            "description, author_id, publisher_id) values (?, 0, ?, ?, ?, ?, ?, ?, ?)";
+
+    @Value("${cookbook.import.chunk-size:1000}")
+    private int chunkSize;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private EntityCounters entityCounters;
+
+    @Autowired
+    private BookSearchIndex searchIndex;
+
+    @Autowired
+    private OutboxWriter outboxWriter;
+
+    @Autowired
+    private CatalogSnapshots catalogSnapshots;
+
+    private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+    private TransactionTemplate transactionTemplate;
+    private PooledIdAllocator bookIds;
+    private PooledIdAllocator authorIds;
+    private PooledIdAllocator publisherIds;
+
+    @PostConstruct
+    public void init() {
+        namedParameterJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        Dialect dialect = entityManagerFactory.unwrap(SessionFactoryImplementor.class).getDialect();
+        bookIds = idAllocator(dialect, IdGeneration.BOOK_SEQUENCE);
+        authorIds = idAllocator(dialect, IdGeneration.AUTHOR_SEQUENCE);
+        publisherIds = idAllocator(dialect, IdGeneration.PUBLISHER_SEQUENCE);
+    }
+
+    private PooledIdAllocator idAllocator(Dialect dialect, String sequenceName) {
+        return new PooledIdAllocator(jdbcTemplate, dialect.getSequenceNextValString(sequenceName),
+                IdGeneration.INCREMENT_SIZE);
+    }
+
+    public ImportReport importBooks(Iterator<BookRecord> records) {
+        long start = System.nanoTime();
+        ImportReport report = new ImportReport();
+        Map<String, Long> authors = new HashMap<>();
+        jdbcTemplate.query("select id, first_name, last_name from author", resultSet -> {
+            authors.put(authorKey(resultSet.getString(2), resultSet.getString(3)), resultSet.getLong(1));
+        });
+        Map<String, Long> publishers = new HashMap<>();
+        jdbcTemplate.query("select id, name from publisher", resultSet -> {
+            publishers.put(resultSet.getString(2), resultSet.getLong(1));
+        });
+        Set<Long> seenIsbns = new HashSet<>();
+        Map<Long, BookRecord> chunk = new LinkedHashMap<>();
+        while (records.hasNext()) {
+            BookRecord record = records.next();
+            report.row();
+            long isbn13 = Isbns.toIsbn13(record.getIsbn());
+            if (isbn13 == Isbns.INVALID || !StringUtils.hasText(record.getTitle())) {
+                report.rejected();
+            } else if (!seenIsbns.add(isbn13)) {
+                report.duplicate();
+            } else {
+                chunk.put(isbn13, record);
+                if (chunk.size() >= chunkSize) {
+                    writeChunk(chunk, authors, publishers, report);
+                    chunk.clear();
+                }
+            }
+        }
+        if (!chunk.isEmpty()) {
+            writeChunk(chunk, authors, publishers, report);
+        }
+        report.finished(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        logger.info("Imported " + report);
+        return report;
+    }
+
+    private void writeChunk(Map<Long, BookRecord> chunk, Map<String, Long> authors, Map<String, Long> publishers,
+                            ImportReport report) {
+        List<Object[]> newAuthors = new ArrayList<>();
+        List<Object[]> newPublishers = new ArrayList<>();
+        List<Object[]> newBooks = new ArrayList<>(chunk.size());
+        List<BookRecord> newBookRecords = new ArrayList<>(chunk.size());
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        transactionTemplate.execute(status -> {
+            Set<Long> existing = new HashSet<>(namedParameterJdbcTemplate.queryForList(
+                    "select isbn13 from book where isbn13 in (:isbns)",
+                    Collections.singletonMap("isbns", chunk.keySet()), Long.class));
+            chunk.forEach((isbn13, record) -> {
+                if (existing.contains(isbn13)) {
+                    report.duplicate();
+                    return;
+                }
+                Long authorId = null;
+                if (record.getAuthorFirstName() != null || record.getAuthorLastName() != null) {
+                    authorId = authors.computeIfAbsent(authorKey(record.getAuthorFirstName(), record.getAuthorLastName()),
+                            key -> {
+                                long id = authorIds.next();
+                                newAuthors.add(new Object[]{id, now, record.getAuthorFirstName(), record.getAuthorLastName()});
+                                return id;
+                            });
+                }
+                Long publisherId = null;
+                if (record.getPublisherName() != null) {
+                    publisherId = publishers.computeIfAbsent(record.getPublisherName(), key -> {
+                        long id = publisherIds.next();
+                        newPublishers.add(new Object[]{id, now, record.getPublisherName()});
+                        return id;
+                    });
+                }
+                newBooks.add(new Object[]{bookIds.next(), now, record.getIsbn(), isbn13, record.getTitle(),
+                        record.getDescription(), authorId, publisherId});
+                newBookRecords.add(record);
+            });
+            jdbcTemplate.batchUpdate(INSERT_AUTHOR, newAuthors);
+            jdbcTemplate.batchUpdate(INSERT_PUBLISHER, newPublishers);
+            jdbcTemplate.batchUpdate(INSERT_BOOK, newBooks);
+            outboxWriter.write(outboxRows(newAuthors, newPublishers, newBooks));
+            return null;
+        });
+        report.imported(newBooks.size());
+        report.authorsCreated(newAuthors.size());
+        report.publishersCreated(newPublishers.size());
+        entityCounters.add(Book.class, newBooks.size());
+        entityCounters.add(Author.class, newAuthors.size());
+        entityCounters.add(Publisher.class, newPublishers.size());
+        if (!newBooks.isEmpty()) {
+            entityManagerFactory.unwrap(SessionFactory.class).getCache().evictQueryRegions();
+        }
+        List<Long> newBookIds = new ArrayList<>(newBooks.size());
+        for (int i = 0; i < newBooks.size(); i++) {
+            Object[] book = newBooks.get(i);
+            newBookIds.add((Long) book[0]);
+            BookRecord record = newBookRecords.get(i);
+            searchIndex.index((Long) book[0], record.getTitle(), record.getDescription(), (Long) book[6],
+                    record.getAuthorFirstName(), record.getAuthorLastName());
+        }
+        catalogSnapshots.booksChanged(newBookIds);
+    }
+
+    private List<Object[]> outboxRows(List<Object[]> newAuthors, List<Object[]> newPublishers, List<Object[]> newBooks) {
+        List<Object[]> rows = new ArrayList<>(newAuthors.size() + newPublishers.size() + newBooks.size());
+        for (Object[] author : newAuthors) {
+            Map<String, Object> changes = new LinkedHashMap<>();
+            changes.put("version", 0L);
+            changes.put("lastModified", author[1]);
+            changes.put("firstName", author[2]);
+            changes.put("lastName", author[3]);
+            rows.add(outboxWriter.row("author", (Long) author[0], EntityChangeEvent.Kind.INSERT, changes));
+        }
+        for (Object[] publisher : newPublishers) {
+            Map<String, Object> changes = new LinkedHashMap<>();
+            changes.put("version", 0L);
+            changes.put("lastModified", publisher[1]);
+            changes.put("name", publisher[2]);
+            rows.add(outboxWriter.row("publisher", (Long) publisher[0], EntityChangeEvent.Kind.INSERT, changes));
+        }
+        for (Object[] book : newBooks) {
+            Map<String, Object> changes = new LinkedHashMap<>();
+            changes.put("version", 0L);
+            changes.put("lastModified", book[1]);
+            changes.put("isbn", book[2]);
+            changes.put("isbn13", book[3]);
+            changes.put("title", book[4]);
+            changes.put("description", book[5]);
+            changes.put("author", book[6]);
+            changes.put("publisher", book[7]);
+            rows.add(outboxWriter.row("book", (Long) book[0], EntityChangeEvent.Kind.INSERT, changes));
+        }
+        return rows;
+    }
+
+    private static String authorKey(String firstName, String lastName) {
+        return (firstName != null ? firstName : "") + '\u0000' + (lastName != null ? lastName : "");
+    }
+}
@@ -0,0 +1,84 @@
+package me.qlibin.ingest;
+
+/**
+ * Outcome of a bulk import.
+ */
+public class ImportReport {
+    private long rows;
+    private long imported;
+    private long duplicates;
+    private long rejected;
+    private long authorsCreated;
+    private long publishersCreated;
+    private long millis;
+
+    public long getRows() {
+        return rows;
+    }
+
+    /** Rows that were inserted as new books. */
+    public long getImported() {
+        return imported;
+    }
+
+    /** Rows whose ISBN was already in the catalog, or earlier in the same import. */
+    public long getDuplicates() {
+        return duplicates;
+    }
+
+    /** Rows without a title or a valid ISBN. */
+    public long getRejected() {
+        return rejected;
+    }
+
+    public long getAuthorsCreated() {
+        return authorsCreated;
+    }
+
+    public long getPublishersCreated() {
+        return publishersCreated;
+    }
+
+    public long getMillis() {
+        return millis;
+    }
+
+    public double getRowsPerSecond() {
+        return millis == 0 ? rows * 1000.0 : rows * 1000.0 / millis;
+    }
+
+    void row() {
+        rows++;
+    }
+
+    void imported(long count) {
+        imported += count;
+    }
+
+    void duplicate() {
+        duplicates++;
+    }
+
+    void rejected() {
+        rejected++;
+    }
+
+    void authorsCreated(long count) {
+        authorsCreated += count;
+    }
+
+    void publishersCreated(long count) {
+        publishersCreated += count;
+    }
+
+    void finished(long millis) {
+        this.millis = millis;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d rows (%d imported, %d duplicates, %d rejected), %d authors and %d publishers created " +
+                "in %d ms, %.0f rows/s", rows, imported, duplicates, rejected, authorsCreated, publishersCreated,
+                millis, getRowsPerSecond());
+    }
+}
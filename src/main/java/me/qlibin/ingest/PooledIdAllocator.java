@@ -0,0 +1,32 @@
+package me.qlibin.ingest;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Hands out ids from a database sequence with the same "pooled-lo" semantics Hibernate uses for the entities
+ * (see IdGeneration): each value read from the sequence is the first id of a block of incrementSize ids,
+ * so rows inserted with plain JDBC never collide with the ones Hibernate inserts, and a batch of
+ * incrementSize rows costs a single round trip for its ids.
+ */
+public class PooledIdAllocator {
+    private final JdbcTemplate jdbcTemplate;
+    private final String nextValueSql;
+    private final int incrementSize;
+
+    private long next;
+    private long blockEnd;
+
+    public PooledIdAllocator(JdbcTemplate jdbcTemplate, String nextValueSql, int incrementSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.nextValueSql = nextValueSql;
+        this.incrementSize = incrementSize;
+    }
+
+    public synchronized long next() {
+        if (next == blockEnd) {
+            next = jdbcTemplate.queryForObject(nextValueSql, Long.class);
+            blockEnd = next + incrementSize;
+        }
+        return next++;
+    }
+}
@@ -0,0 +1,147 @@
+package me.qlibin.jdbc;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+
+/**
+ * Wraps the connections of the target DataSource, and the statements they create, in JDK proxies that time
+ * every execute call and report it to StatementStatistics together with its SQL, so that every statement
+ * of JPA, Spring Data and the JdbcTemplates is seen, whichever of them issued it.
+ *
+ * An execution is one round trip to the database: a JDBC batch counts as one statement.
+ * The parameters set on a PreparedStatement are remembered, so that a slow statement can be explained
+ * with the values it actually ran with.
+ */
+public class InstrumentedDataSource extends DelegatingDataSource {
+    private static final Class<?>[] CONNECTION = {Connection.class};
+    private static final Class<?>[] STATEMENT = {Statement.class};
+    private static final Class<?>[] PREPARED_STATEMENT = {PreparedStatement.class};
+    private static final Class<?>[] CALLABLE_STATEMENT = {CallableStatement.class};
+
+    private final StatementStatistics statistics;
+
+    public InstrumentedDataSource(DataSource targetDataSource, StatementStatistics statistics) {
+        super(targetDataSource);
+        this.statistics = statistics;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return connection(getTargetDataSource().getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return connection(getTargetDataSource().getConnection(username, password));
+    }
+
+    private Connection connection(Connection target) {
+        return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), CONNECTION,
+                new ConnectionHandler(target));
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+
+    private final class ConnectionHandler implements InvocationHandler {
+        private final Connection target;
+
+        private ConnectionHandler(Connection target) {
+            this.target = target;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "createStatement":
+                    return statement((Statement) InstrumentedDataSource.invoke(target, method, args),
+                            (Connection) proxy, STATEMENT, null);
+                case "prepareStatement":
+                    return statement((Statement) InstrumentedDataSource.invoke(target, method, args),
+                            (Connection) proxy, PREPARED_STATEMENT, (String) args[0]);
+                case "prepareCall":
+                    return statement((Statement) InstrumentedDataSource.invoke(target, method, args),
+                            (Connection) proxy, CALLABLE_STATEMENT, (String) args[0]);
+                default:
+                    return InstrumentedDataSource.invoke(target, method, args);
+            }
+        }
+
+        private Object statement(Statement target, Connection connection, Class<?>[] interfaces, String sql) {
+            return Proxy.newProxyInstance(InstrumentedDataSource.class.getClassLoader(), interfaces,
+                    new StatementHandler(target, connection, sql));
+        }
+    }
+
+    private final class StatementHandler implements InvocationHandler {
+        private final Statement target;
+        private final Connection connection;
+        /** The SQL of a prepared statement, or the last one added to the batch of a plain one. */
+        private String sql;
+        /** The parameters by index, 0 being unused, as JDBC counts them from 1. */
+        private Object[] parameters = new Object[8];
+
+        private StatementHandler(Statement target, Connection connection, String sql) {
+            this.target = target;
+            this.connection = connection;
+            this.sql = sql;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.startsWith("execute")) {
+                String executed = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : sql;
+                long start = System.nanoTime();
+                try {
+                    return InstrumentedDataSource.invoke(target, method, args);
+                } finally {
+                    statistics.record(executed, System.nanoTime() - start, parameters, getTargetDataSource());
+                }
+            }
+            if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer) {
+                setParameter((Integer) args[0], "setNull".equals(name) ? null : args[1]);
+            } else if ("clearParameters".equals(name)) {
+                Arrays.fill(parameters, null);
+            } else if ("addBatch".equals(name) && args != null && args.length == 1) {
+                sql = (String) args[0];
+            } else if ("getConnection".equals(name)) {
+                return connection;
+            } else if ("equals".equals(name)) {
+                return proxy == args[0];
+            } else if ("hashCode".equals(name)) {
+                return System.identityHashCode(proxy);
+            }
+            return InstrumentedDataSource.invoke(target, method, args);
+        }
+
+        private void setParameter(int index, Object value) {
+            if (index >= parameters.length) {
+                parameters = Arrays.copyOf(parameters, Math.max(index + 1, parameters.length * 2));
+            }
+            if (index > 0) {
+                parameters[index] = value;
+            }
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package me.qlibin.jdbc;
+
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+
+import javax.sql.DataSource;
+
+/**
+ * Wraps the application's DataSource, the one named "dataSource" whether it comes from Spring Boot or from
+ * ReplicaRoutingConfiguration, in an InstrumentedDataSource. It is done after initialization, so the pool
+ * has been configured and the schema scripts have run by then, and everything that is injected
+ * with the DataSource (JPA, the JdbcTemplates, the transaction managers) gets the instrumented one.
+ */
+public class InstrumentedDataSourcePostProcessor implements BeanPostProcessor {
+    static final String DATA_SOURCE_BEAN_NAME = "dataSource";
+
+    private final StatementStatistics statistics;
+
+    public InstrumentedDataSourcePostProcessor(StatementStatistics statistics) {
+        this.statistics = statistics;
+    }
+
+    @Override
+    public Object postProcessBeforeInitialization(Object bean, String beanName) throws BeansException {
+        return bean;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) throws BeansException {
+        if (DATA_SOURCE_BEAN_NAME.equals(beanName) && bean instanceof DataSource
+                && !(bean instanceof InstrumentedDataSource)) {
+            return new InstrumentedDataSource((DataSource) bean, statistics);
+        }
+        return bean;
+    }
+}
@@ -0,0 +1,31 @@
+package me.qlibin.jdbc;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Statement timings and counts for every SQL statement, see InstrumentedDataSource.
+ * On by default; cookbook.jdbc.instrumentation=false leaves the DataSource alone.
+ *
+ * Like the ones of StartupConfiguration, the post processor is declared by a static @Bean method,
+ * so it is created before the regular beans, and before the DataSource in particular.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "cookbook.jdbc", name = "instrumentation", matchIfMissing = true)
+public class JdbcInstrumentationConfiguration {
+
+    @Bean
+    public static StatementStatistics statementStatistics(
+            @Value("${cookbook.jdbc.slow-query-ms:200}") long slowQueryMillis,
+            @Value("${cookbook.jdbc.max-statements:500}") int maxStatements) {
+        return new StatementStatistics(slowQueryMillis, maxStatements);
+    }
+
+    @Bean
+    public static InstrumentedDataSourcePostProcessor instrumentedDataSourcePostProcessor(
+            StatementStatistics statementStatistics) {
+        return new InstrumentedDataSourcePostProcessor(statementStatistics);
+    }
+}
@@ -0,0 +1,90 @@
+package me.qlibin.jdbc;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Counts the SQL statements that the current thread executes through the InstrumentedDataSource.
+ *
+ * There is always a running count per thread, which RequestMetricsInterceptor reads before and after a request
+ * to get the number of statements the request issued, without allocating anything. On top of that, a capture
+ * started with start() also keeps the statements themselves until it is closed, which is what tests use
+ * to pin the number of statements of an operation, so that an N+1 select shows up as a failure:
+ *
+ *     try (StatementCapture capture = StatementCapture.start()) {
+ *         mockMvc.perform(get("/books"));
+ *         capture.assertAtMost(2);
+ *     }
+ *
+ * Only the statements of the thread that started the capture are seen, so the work must happen on that thread,
+ * as it does for a MockMvc request that does not go asynchronous. Captures can be nested.
+ */
+public final class StatementCapture implements AutoCloseable {
+    /** More statements than this are counted, but not kept. */
+    static final int MAX_KEPT_STATEMENTS = 200;
+
+    private static final ThreadLocal<long[]> THREAD_COUNT = ThreadLocal.withInitial(() -> new long[1]);
+    private static final ThreadLocal<StatementCapture> CURRENT = new ThreadLocal<>();
+
+    private final StatementCapture outer;
+    private final List<String> statements = new ArrayList<>();
+    private int count;
+
+    private StatementCapture(StatementCapture outer) {
+        this.outer = outer;
+    }
+
+    public static StatementCapture start() {
+        StatementCapture capture = new StatementCapture(CURRENT.get());
+        CURRENT.set(capture);
+        return capture;
+    }
+
+    /**
+     * The number of statements the current thread has executed since it started.
+     */
+    public static long threadCount() {
+        return THREAD_COUNT.get()[0];
+    }
+
+    static void record(String sql) {
+        THREAD_COUNT.get()[0]++;
+        for (StatementCapture capture = CURRENT.get(); capture != null; capture = capture.outer) {
+            capture.count++;
+            if (capture.statements.size() < MAX_KEPT_STATEMENTS) {
+                capture.statements.add(sql);
+            }
+        }
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public List<String> getStatements() {
+        return Collections.unmodifiableList(statements);
+    }
+
+    /**
+     * @throws AssertionError listing the statements, when more than max of them were executed
+     */
+    public void assertAtMost(int max) {
+        if (count > max) {
+            throw new AssertionError("Expected at most " + max + " SQL statements, but " + count
+                    + " were executed:\n  " + String.join("\n  ", statements));
+        }
+    }
+
+    @Override
+    public void close() {
+        if (CURRENT.get() != this) {
+            throw new IllegalStateException("Not the innermost capture of this thread");
+        }
+        if (outer != null) {
+            CURRENT.set(outer);
+        } else {
+            CURRENT.remove();
+        }
+    }
+}
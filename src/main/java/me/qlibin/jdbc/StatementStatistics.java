@@ -0,0 +1,185 @@
+package me.qlibin.jdbc;
+
+import me.qlibin.metrics.LogLinearHistogram;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * The execution times of the statements run through the InstrumentedDataSource, per distinct SQL string.
+ * Hibernate and Spring Data use the same SQL for every execution of a query, so there are few of them;
+ * beyond maxStatements, the rest are counted together as OTHER.
+ *
+ * A statement that takes slowQueryMillis or longer is logged at WARN with the plan the database chose for it,
+ * from an EXPLAIN run with the same parameters. The EXPLAIN needs a connection of its own and is run
+ * by a single background thread, so it neither holds up the slow request any longer nor competes with it
+ * for its connection; when slow statements come faster than they can be explained, the extra ones are not logged.
+ */
+public class StatementStatistics {
+    private final Log logger = LogFactory.getLog(getClass());
+
+    public static final String OTHER = "(other statements)";
+
+    private static final Pattern EXPLAINABLE = Pattern.compile("^\\s*(select|with|insert|update|delete|merge)\\b",
+            Pattern.CASE_INSENSITIVE);
+
+    private final long slowQueryNanos;
+    private final int maxStatements;
+    private final ConcurrentMap<String, Sql> statements = new ConcurrentHashMap<>();
+    private final ThreadPoolExecutor explainExecutor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(16), runnable -> {
+                Thread thread = new Thread(runnable, "slow-statement-explain");
+                thread.setDaemon(true);
+                return thread;
+            }, new ThreadPoolExecutor.DiscardPolicy());
+
+    /**
+     * @param slowQueryMillis the execution time from which statements are logged, or a negative number to log none
+     */
+    public StatementStatistics(long slowQueryMillis, int maxStatements) {
+        this.slowQueryNanos = slowQueryMillis >= 0 ? TimeUnit.MILLISECONDS.toNanos(slowQueryMillis) : Long.MAX_VALUE;
+        this.maxStatements = maxStatements;
+    }
+
+    /**
+     * @param parameters the parameters of a prepared statement by index, which may still change after the call
+     * @param dataSource where the statement ran, to explain it
+     */
+    void record(String sql, long nanos, Object[] parameters, DataSource dataSource) {
+        StatementCapture.record(sql);
+        sql(sql).micros.record(TimeUnit.NANOSECONDS.toMicros(nanos));
+        if (nanos >= slowQueryNanos) {
+            Object[] values = parameters.clone();
+            explainExecutor.execute(() -> logSlow(sql, nanos, values, dataSource));
+        }
+    }
+
+    private Sql sql(String sql) {
+        Sql stats = statements.get(sql);
+        if (stats == null) {
+            // the bound is approximate, a few statements may get in concurrently
+            String key = statements.size() < maxStatements ? sql : OTHER;
+            stats = statements.computeIfAbsent(key, Sql::new);
+        }
+        return stats;
+    }
+
+    private void logSlow(String sql, long nanos, Object[] parameters, DataSource dataSource) {
+        String plan = EXPLAINABLE.matcher(sql).find() ? explain(sql, parameters, dataSource) : "(not explainable)";
+        logger.warn(String.format("Slow statement, %d ms: %s%n  parameters: %s%n  plan: %s",
+                TimeUnit.NANOSECONDS.toMillis(nanos), sql,
+                Arrays.toString(Arrays.copyOfRange(parameters, 1, lastParameter(parameters) + 1)), plan));
+    }
+
+    private static String explain(String sql, Object[] parameters, DataSource dataSource) {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement explain = connection.prepareStatement("EXPLAIN " + sql)) {
+            int count = explain.getParameterMetaData().getParameterCount();
+            for (int i = 1; i <= count; i++) {
+                explain.setObject(i, i < parameters.length ? parameters[i] : null);
+            }
+            StringBuilder plan = new StringBuilder();
+            try (ResultSet resultSet = explain.executeQuery()) {
+                while (resultSet.next()) {
+                    plan.append(resultSet.getString(1)).append('\n');
+                }
+            }
+            return plan.toString().trim();
+        } catch (SQLException e) {
+            return "(EXPLAIN failed: " + e.getMessage() + ")";
+        }
+    }
+
+    private static int lastParameter(Object[] parameters) {
+        int last = parameters.length - 1;
+        while (last > 0 && parameters[last] == null) {
+            last--;
+        }
+        return last;
+    }
+
+    /**
+     * Called by the container when the bean is destroyed.
+     */
+    public void shutdown() {
+        explainExecutor.shutdownNow();
+    }
+
+    /**
+     * The statements that took the most time in total, first.
+     */
+    public List<Entry> getTop(int limit) {
+        return statements.values().stream()
+                .map(sql -> new Entry(sql.sql, sql.micros))
+                .sorted(Comparator.comparingDouble(Entry::getTotalMillis).reversed())
+                .limit(limit)
+                .collect(Collectors.toCollection(ArrayList::new));
+    }
+
+    private static final class Sql {
+        private final String sql;
+        private final LogLinearHistogram micros = new LogLinearHistogram();
+
+        private Sql(String sql) {
+            this.sql = sql;
+        }
+    }
+
+    public static class Entry {
+        private final String sql;
+        private final long count;
+        private final double totalMillis;
+        private final double p50Millis;
+        private final double p99Millis;
+        private final double maxMillis;
+
+        private Entry(String sql, LogLinearHistogram micros) {
+            this.sql = sql;
+            this.count = micros.getCount();
+            this.totalMillis = micros.getSum() / 1000.0;
+            this.p50Millis = micros.getValueAtQuantile(0.5) / 1000.0;
+            this.p99Millis = micros.getValueAtQuantile(0.99) / 1000.0;
+            this.maxMillis = micros.getMax() / 1000.0;
+        }
+
+        public String getSql() {
+            return sql;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public double getTotalMillis() {
+            return totalMillis;
+        }
+
+        public double getP50Millis() {
+            return p50Millis;
+        }
+
+        public double getP99Millis() {
+            return p99Millis;
+        }
+
+        public double getMaxMillis() {
+            return maxMillis;
+        }
+    }
+}
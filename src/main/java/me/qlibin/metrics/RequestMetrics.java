@@ -0,0 +1,137 @@
+package me.qlibin.metrics;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Function;
+
+/**
+ * Request latency, status code, response size and SQL statement count distributions per handler,
+ * recorded by RequestMetricsInterceptor and published in the Prometheus text exposition format.
+ *
+ * The distributions are cumulative since the application started; a scraper computes rates
+ * from the counts, and the quantiles describe the whole lifetime of the process.
+ */
+@Component
+public class RequestMetrics {
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    static final double[] QUANTILES = {0.5, 0.99, 0.999};
+    private static final int MAX_STATUS = 600;
+
+    private final ConcurrentMap<Object, Endpoint> endpoints = new ConcurrentHashMap<>();
+
+    /**
+     * The metrics of the handler with the given key, created with the given name on first use.
+     * The key is looked up without allocating, so it must have a cheap, stable equals and hashCode.
+     */
+    public <K> Endpoint endpoint(K key, Function<K, String> name) {
+        Endpoint endpoint = endpoints.get(key);
+        if (endpoint == null) {
+            endpoint = endpoints.computeIfAbsent(key, k -> new Endpoint(name.apply(key)));
+        }
+        return endpoint;
+    }
+
+    public String toPrometheusText() {
+        Map<String, Endpoint> byName = new TreeMap<>();
+        endpoints.values().forEach(endpoint -> byName.merge(endpoint.name, endpoint, (a, b) -> a));
+        StringBuilder text = new StringBuilder(256 + byName.size() * 1024);
+        text.append("# HELP http_server_requests_seconds Time from the start of handling a request to its completion.\n")
+                .append("# TYPE http_server_requests_seconds summary\n");
+        byName.values().forEach(endpoint -> appendSummary(text, "http_server_requests_seconds",
+                endpoint.name, endpoint.latencyMicros, 1e-6));
+        text.append("# HELP http_server_requests_seconds_max Longest request so far.\n")
+                .append("# TYPE http_server_requests_seconds_max gauge\n");
+        byName.values().forEach(endpoint -> text.append("http_server_requests_seconds_max{handler=\"")
+                .append(endpoint.name).append("\"} ").append(endpoint.latencyMicros.getMax() * 1e-6).append('\n'));
+        text.append("# HELP http_server_responses_total Completed requests by status code.\n")
+                .append("# TYPE http_server_responses_total counter\n");
+        byName.values().forEach(endpoint -> {
+            for (int status = 0; status < MAX_STATUS; status++) {
+                long count = endpoint.statusCounts.get(status);
+                if (count > 0) {
+                    text.append("http_server_responses_total{handler=\"").append(endpoint.name)
+                            .append("\",status=\"").append(status).append("\"} ").append(count).append('\n');
+                }
+            }
+        });
+        text.append("# HELP http_server_response_size_bytes Size of the response bodies.\n")
+                .append("# TYPE http_server_response_size_bytes summary\n");
+        byName.values().forEach(endpoint -> appendSummary(text, "http_server_response_size_bytes",
+                endpoint.name, endpoint.responseBytes, 1));
+        text.append("# HELP http_server_request_statements SQL statements issued per request, see StatementCapture.\n")
+                .append("# TYPE http_server_request_statements summary\n");
+        byName.values().forEach(endpoint -> appendSummary(text, "http_server_request_statements",
+                endpoint.name, endpoint.statements, 1));
+        return text.toString();
+    }
+
+    private static void appendSummary(StringBuilder text, String metric, String handler,
+                                      LogLinearHistogram histogram, double scale) {
+        for (double quantile : QUANTILES) {
+            text.append(metric).append("{handler=\"").append(handler).append("\",quantile=\"").append(quantile)
+                    .append("\"} ").append(histogram.getValueAtQuantile(quantile) * scale).append('\n');
+        }
+        text.append(metric).append("_sum{handler=\"").append(handler).append("\"} ")
+                .append(histogram.getSum() * scale).append('\n');
+        text.append(metric).append("_count{handler=\"").append(handler).append("\"} ")
+                .append(histogram.getCount()).append('\n');
+    }
+
+    public static final class Endpoint {
+        private final String name;
+        private final LogLinearHistogram latencyMicros = new LogLinearHistogram();
+        private final LogLinearHistogram responseBytes = new LogLinearHistogram();
+        private final LogLinearHistogram statements = new LogLinearHistogram();
+        private final AtomicLongArray statusCounts = new AtomicLongArray(MAX_STATUS);
+
+        private Endpoint(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @param responseBytes the size of the response body, or a negative number when it is unknown
+         */
+        public void record(long latencyMicros, int status, long responseBytes) {
+            this.latencyMicros.record(latencyMicros);
+            if (status >= 0 && status < MAX_STATUS) {
+                statusCounts.incrementAndGet(status);
+            }
+            if (responseBytes >= 0) {
+                this.responseBytes.record(responseBytes);
+            }
+        }
+
+        /**
+         * Only for the requests that completed on the thread they started on, where they can be counted.
+         */
+        public void recordStatements(long statements) {
+            this.statements.record(statements);
+        }
+
+        public LogLinearHistogram getLatencyMicros() {
+            return latencyMicros;
+        }
+
+        public LogLinearHistogram getResponseBytes() {
+            return responseBytes;
+        }
+
+        public LogLinearHistogram getStatements() {
+            return statements;
+        }
+
+        public long getStatusCount(int status) {
+            return status >= 0 && status < MAX_STATUS ? statusCounts.get(status) : 0;
+        }
+    }
+}
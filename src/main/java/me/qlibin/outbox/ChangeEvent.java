@@ -0,0 +1,53 @@
+package me.qlibin.outbox;
+
+import com.fasterxml.jackson.annotation.JsonRawValue;
+
+import java.util.Date;
+
+/**
+ * One change of the feed, as sent to the consumers: the offset, which entity changed and how,
+ * and the new values of the changed properties (none for a delete).
+ */
+public class ChangeEvent {
+    private final long position;
+    private final String type;
+    private final long id;
+    private final String kind;
+    private final Date occurredAt;
+    private final String changes;
+
+    public ChangeEvent(long position, String type, long id, String kind, Date occurredAt, String changes) {
+        this.position = position;
+        this.type = type;
+        this.id = id;
+        this.kind = kind;
+        this.occurredAt = occurredAt;
+        this.changes = changes;
+    }
+
+    public long getPosition() {
+        return position;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getKind() {
+        return kind;
+    }
+
+    public Date getOccurredAt() {
+        return occurredAt;
+    }
+
+    /** Already JSON, written as is. */
+    @JsonRawValue
+    public String getChanges() {
+        return changes;
+    }
+}
@@ -0,0 +1,215 @@
+package me.qlibin.outbox;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * The reading side of the transactional outbox: numbers the committed OutboxEvent rows and sends them
+ * to the subscribers of the change feed as Server-Sent Events.
+ *
+ * The rows are numbered in the order they become visible, i.e. committed, by a single relay thread, so a
+ * position is never given to a row that commits after a row with a higher one. That is what makes the
+ * position usable as a resumable offset: a consumer that has seen position n has seen every change before it,
+ * and resumes with the changes after n (the Last-Event-ID a reconnecting EventSource sends).
+ * Only one instance of the application may number the rows of a database.
+ *
+ * Every subscriber has its own offset, and catches up from the outbox table, an index range scan on the
+ * position, so a consumer that connects with an old offset gets the missed changes before the live ones.
+ * All the sends happen on the relay thread, one subscriber after the other. The rows are deleted after
+ * the retention time; a consumer whose offset is older than that first gets a "reset" event, telling it
+ * to read the catalog again before it goes on with the changes. So does a consumer whose offset is ahead of
+ * the last position, which can only come from another database.
+ *
+ * The numbering goes on from the highest position in the table when the application starts, so the newest
+ * numbered row is never purged: were the table empty, the positions consumers have already seen would be
+ * given out again.
+ */
+@Component
+public class OutboxRelay {
+    private static final Log logger = LogFactory.getLog(OutboxRelay.class);
+
+    static final String RESET_EVENT = "reset";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${cookbook.outbox.poll-interval-ms:500}")
+    private long pollIntervalMillis;
+
+    @Value("${cookbook.outbox.batch-size:500}")
+    private int batchSize;
+
+    @Value("${cookbook.outbox.retention-hours:24}")
+    private long retentionHours;
+
+    @Value("${cookbook.outbox.emitter-timeout-ms:300000}")
+    private long emitterTimeoutMillis;
+
+    private TransactionTemplate transactionTemplate;
+    private ScheduledExecutorService relayThread;
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+    private volatile long lastPosition;
+
+    @PostConstruct
+    public void start() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        lastPosition = jdbcTemplate.queryForObject("select coalesce(max(position), 0) from outbox_event", Long.class);
+        relayThread = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "outbox-relay");
+            thread.setDaemon(true);
+            return thread;
+        });
+        relayThread.scheduleWithFixedDelay(this::relay, pollIntervalMillis, pollIntervalMillis, TimeUnit.MILLISECONDS);
+        relayThread.scheduleWithFixedDelay(() -> purge(
+                new Date(System.currentTimeMillis() - TimeUnit.HOURS.toMillis(retentionHours))), 1, 1, TimeUnit.HOURS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        relayThread.shutdownNow();
+        subscribers.forEach(subscriber -> subscriber.emitter.complete());
+        subscribers.clear();
+    }
+
+    /**
+     * Subscribes to the changes after the given position, 0 for all the retained changes.
+     */
+    public SseEmitter subscribe(long after) {
+        SseEmitter emitter = new SseEmitter(emitterTimeoutMillis);
+        Subscriber subscriber = new Subscriber(emitter, after);
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(() -> subscribers.remove(subscriber));
+        subscribers.add(subscriber);
+        relayThread.execute(this::relay);
+        return emitter;
+    }
+
+    /**
+     * The highest position numbered so far.
+     */
+    public long getLastPosition() {
+        return lastPosition;
+    }
+
+    /**
+     * Numbers the newly committed rows, then sends every subscriber what it hasn't seen yet.
+     * Only ever called on the relay thread.
+     */
+    void relay() {
+        try {
+            while (number() == batchSize) {
+                // more rows than a batch were waiting
+            }
+            for (Subscriber subscriber : subscribers) {
+                send(subscriber);
+            }
+        } catch (RuntimeException e) {
+            // an exception would cancel the periodic relay, so it is only logged
+            logger.warn("Could not relay the outbox", e);
+        }
+    }
+
+    private int number() {
+        Integer numbered = transactionTemplate.execute(status -> {
+            List<Long> ids = jdbcTemplate.queryForList(
+                    "select id from outbox_event where position is null order by id limit ?", Long.class, batchSize);
+            long position = lastPosition;
+            List<Object[]> updates = new ArrayList<>(ids.size());
+            for (Long id : ids) {
+                updates.add(new Object[]{++position, id});
+            }
+            jdbcTemplate.batchUpdate("update outbox_event set position = ? where id = ?", updates);
+            return ids.size();
+        });
+        lastPosition += numbered;
+        return numbered;
+    }
+
+    private void send(Subscriber subscriber) {
+        try {
+            if (!subscriber.started) {
+                subscriber.started = true;
+                Long oldest = jdbcTemplate.queryForObject("select min(position) from outbox_event", Long.class);
+                if (subscriber.lastSent < (oldest != null ? oldest - 1 : lastPosition)
+                        || subscriber.lastSent > lastPosition) {
+                    subscriber.emitter.send(SseEmitter.event().name(RESET_EVENT).data("{}", MediaType.APPLICATION_JSON));
+                    subscriber.lastSent = Math.min(subscriber.lastSent, lastPosition);
+                }
+            }
+            while (subscriber.lastSent < lastPosition) {
+                List<ChangeEvent> events = jdbcTemplate.query(
+                        "select position, entity_type, entity_id, kind, occurred_at, changes from outbox_event " +
+                                "where position > ? order by position limit ?",
+                        (resultSet, row) -> new ChangeEvent(resultSet.getLong(1), resultSet.getString(2),
+                                resultSet.getLong(3), resultSet.getString(4), resultSet.getTimestamp(5), resultSet.getString(6)),
+                        subscriber.lastSent, batchSize);
+                if (events.isEmpty()) {
+                    // purged in the meantime
+                    subscriber.lastSent = lastPosition;
+                    break;
+                }
+                for (ChangeEvent event : events) {
+                    subscriber.emitter.send(SseEmitter.event()
+                            .id(String.valueOf(event.getPosition()))
+                            .name(event.getType())
+                            .data(event, MediaType.APPLICATION_JSON));
+                    subscriber.lastSent = event.getPosition();
+                }
+            }
+        } catch (IOException | IllegalStateException e) {
+            // the consumer has gone away; it resumes from its last event id when it comes back
+            subscribers.remove(subscriber);
+            subscriber.emitter.completeWithError(e);
+        }
+    }
+
+    /**
+     * Deletes the numbered rows that occurred before the given time, except the newest one.
+     *
+     * @return the number of rows deleted
+     */
+    public int purge(Date occurredBefore) {
+        try {
+            int purged = jdbcTemplate.update("delete from outbox_event where position < ? and occurred_at < ?",
+                    lastPosition, new Timestamp(occurredBefore.getTime()));
+            if (purged > 0) {
+                logger.info("Purged " + purged + " outbox events");
+            }
+            return purged;
+        } catch (RuntimeException e) {
+            logger.warn("Could not purge the outbox", e);
+            return 0;
+        }
+    }
+
+    private static final class Subscriber {
+        private final SseEmitter emitter;
+        private volatile long lastSent;
+        private boolean started;
+
+        private Subscriber(SseEmitter emitter, long after) {
+            this.emitter = emitter;
+            this.lastSent = after;
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package me.qlibin.outbox;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import me.qlibin.entity.*;
+import me.qlibin.events.EntityChangeEvent;
+import org.hibernate.HibernateException;
+import org.hibernate.action.spi.AfterTransactionCompletionProcess;
+import org.hibernate.action.spi.BeforeTransactionCompletionProcess;
+import org.hibernate.engine.internal.ForeignKeys;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.*;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.type.EntityType;
+import org.hibernate.type.Type;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManagerFactory;
+import java.io.Serializable;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.*;
+
+/**
+ * The writing side of the transactional outbox: every insert, update and delete of a book, author, publisher
+ * or reviewer is recorded as an OutboxEvent row in the same transaction as the change itself, so the outbox
+ * has a row for every committed change and none for a rolled back one. OutboxRelay feeds them to the consumers.
+ *
+ * Unlike EntityChangePublisher, which reacts after the commit, these are the in-flush listeners: they run
+ * right after Hibernate has executed the statement of the change. The rows of a transaction are collected per
+ * session and written in one JDBC batch, on the connection of the transaction, just before it commits;
+ * a failure to write them fails the commit.
+ *
+ * The ids of the rows are taken from the outbox sequence by the INSERT itself, so writing them never needs
+ * a connection other than the one of the transaction. Each call to the sequence reserves a whole block of
+ * ids for Hibernate's optimizer (see IdGeneration), so the ids are far apart; nothing but their order matters.
+ *
+ * Changes made with plain JDBC bypass the listeners, so the CatalogImporter writes its rows through write.
+ */
+@Component
+public class OutboxWriter implements PostInsertEventListener, PostUpdateEventListener, PostDeleteEventListener {
+    private static final long serialVersionUID = 1L;
+
+    /** The entity types in the change feed, by the name they have there. */
+    static final Map<Class<?>, String> TYPE_NAMES = new HashMap<>();
+
+    static {
+        TYPE_NAMES.put(Book.class, "book");
+        TYPE_NAMES.put(Author.class, "author");
+        TYPE_NAMES.put(Publisher.class, "publisher");
+        TYPE_NAMES.put(Reviewer.class, "reviewer");
+    }
+
+    @Autowired
+    private transient EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private transient JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private transient ObjectMapper objectMapper;
+
+    private transient String insert;
+
+    /** Weak keys: a session whose transaction never completes must not be kept around. */
+    private final transient Map<EventSource, Batch> batches = Collections.synchronizedMap(new WeakHashMap<>());
+
+    @PostConstruct
+    public void register() {
+        SessionFactoryImplementor sessionFactory = entityManagerFactory.unwrap(SessionFactoryImplementor.class);
+        insert = "insert into outbox_event (id, entity_type, entity_id, kind, occurred_at, changes) values (" +
+                sessionFactory.getDialect().getSelectSequenceNextValString(IdGeneration.OUTBOX_SEQUENCE) + ", ?, ?, ?, ?, ?)";
+        EventListenerRegistry registry = sessionFactory.getServiceRegistry().getService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.POST_INSERT, this);
+        registry.appendListeners(EventType.POST_UPDATE, this);
+        registry.appendListeners(EventType.POST_DELETE, this);
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        capture(event.getSession(), event.getPersister(), event.getId(), EntityChangeEvent.Kind.INSERT, event.getState(), null);
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        capture(event.getSession(), event.getPersister(), event.getId(), EntityChangeEvent.Kind.UPDATE, event.getState(),
+                event.getDirtyProperties());
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        capture(event.getSession(), event.getPersister(), event.getId(), EntityChangeEvent.Kind.DELETE, null, null);
+    }
+
+    @Override
+    public boolean requiresPostCommitHanding(EntityPersister persister) {
+        return false;
+    }
+
+    private void capture(EventSource session, EntityPersister persister, Serializable id,
+                         EntityChangeEvent.Kind kind, Object[] state, int[] dirtyProperties) {
+        String typeName = TYPE_NAMES.get(persister.getMappedClass());
+        if (typeName == null) {
+            return;
+        }
+        Map<String, Object> changes = null;
+        if (state != null) {
+            changes = new LinkedHashMap<>();
+            String[] names = persister.getPropertyNames();
+            Type[] types = persister.getPropertyTypes();
+            int count = dirtyProperties != null ? dirtyProperties.length : names.length;
+            for (int i = 0; i < count; i++) {
+                int property = dirtyProperties != null ? dirtyProperties[i] : i;
+                Type type = types[property];
+                Object value = state[property];
+                if (type.isCollectionType()) {
+                    continue;
+                }
+                if (type.isEntityType() && value != null) {
+                    // a reference to another entity is given by its id
+                    value = ForeignKeys.getEntityIdentifierIfNotUnsaved(
+                            ((EntityType) type).getAssociatedEntityName(), value, session);
+                }
+                changes.put(names[property], value);
+            }
+        }
+        Object[] row = row(typeName, ((Number) id).longValue(), kind, changes);
+        batches.computeIfAbsent(session, key -> {
+            Batch batch = new Batch();
+            key.getActionQueue().registerProcess((BeforeTransactionCompletionProcess) batch);
+            key.getActionQueue().registerProcess((AfterTransactionCompletionProcess) batch);
+            return batch;
+        }).rows.add(row);
+    }
+
+    /**
+     * The parameters of the INSERT of one outbox row.
+     *
+     * @param changes the new values of the changed properties, null for a delete
+     */
+    public Object[] row(String typeName, long entityId, EntityChangeEvent.Kind kind, Map<String, Object> changes) {
+        try {
+            return new Object[]{typeName, entityId, kind.name(), new Timestamp(System.currentTimeMillis()),
+                    changes != null ? objectMapper.writeValueAsString(changes) : null};
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Could not serialize the changes of " + typeName + "#" + entityId, e);
+        }
+    }
+
+    /**
+     * Writes outbox rows made by row() with the JdbcTemplate, i.e. in the current transaction if there is one.
+     */
+    public void write(List<Object[]> rows) {
+        if (!rows.isEmpty()) {
+            jdbcTemplate.batchUpdate(insert, rows);
+        }
+    }
+
+    /** The rows of one transaction of one session. */
+    private final class Batch implements BeforeTransactionCompletionProcess, AfterTransactionCompletionProcess {
+        private final List<Object[]> rows = new ArrayList<>();
+
+        @Override
+        public void doBeforeTransactionCompletion(SessionImplementor session) {
+            batches.remove(session);
+            Connection connection = session.getJdbcCoordinator().getLogicalConnection().getPhysicalConnection();
+            try (PreparedStatement statement = connection.prepareStatement(insert)) {
+                for (Object[] row : rows) {
+                    for (int i = 0; i < row.length; i++) {
+                        if (row[i] != null) {
+                            statement.setObject(i + 1, row[i]);
+                        } else {
+                            statement.setNull(i + 1, Types.VARCHAR);
+                        }
+                    }
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+            } catch (SQLException e) {
+                throw new HibernateException("Could not write " + rows.size() + " outbox events", e);
+            }
+        }
+
+        @Override
+        public void doAfterTransactionCompletion(boolean success, SessionImplementor session) {
+            batches.remove(session);
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package me.qlibin.readmodel;
+
+import me.qlibin.dto.BookView;
+import me.qlibin.dto.ReviewerView;
+import me.qlibin.repository.BookRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Reads books as BookViews, never as entities: one constructor query for the books and, for any number
+ * of books, one more query that brings in the reviewers of all of them.
+ *
+ * The transactions are read-only, so Hibernate does not even flush the (empty) persistence context
+ * at commit, and the JDBC connection is flagged read-only. That also lets ReplicaRoutingDataSource send them
+ * to a read replica, which is fine for a response but not for what is kept after it: the …FromPrimary methods
+ * are for filling BookIsbnCache and CatalogSnapshots, which must not keep the state from before the very change
+ * that invalidated them just because a replica has not caught up with it yet.
+ */
+@Service
+@Transactional(readOnly = true)
+public class BookReadModel {
+    /** The number of streamed books whose reviewers are read together. */
+    static final int STREAM_BATCH_SIZE = 100;
+
+    private final BookRepository bookRepository;
+
+    @Autowired
+    public BookReadModel(BookRepository bookRepository) {
+        this.bookRepository = bookRepository;
+    }
+
+    public BookView findByIsbn13(Long isbn13) {
+        return withReviewers(bookRepository.findViewByIsbn13(isbn13));
+    }
+
+    /**
+     * Like findByIsbn13, but from the primary, for filling a cache.
+     */
+    @Transactional
+    public BookView findByIsbn13FromPrimary(Long isbn13) {
+        return findByIsbn13(isbn13);
+    }
+
+    public BookView findById(Long id) {
+        return withReviewers(bookRepository.findViewById(id));
+    }
+
+    public List<BookView> findAll() {
+        return withReviewers(bookRepository.findAllViews());
+    }
+
+    public List<BookView> findAfter(long after, int size) {
+        return withReviewers(bookRepository.findViewsAfter(after, new PageRequest(0, size)));
+    }
+
+    /**
+     * The books with the given canonical ISBN-13s, by ISBN-13; the missing ones are not in the map.
+     * One query for the books, however many ISBNs there are, and one for their reviewers.
+     */
+    public Map<Long, BookView> findByIsbn13s(Collection<Long> isbn13s) {
+        if (isbn13s.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        Map<Long, BookView> booksByIsbn13 = new HashMap<>(isbn13s.size() * 2);
+        withReviewers(bookRepository.findViewsByIsbn13In(isbn13s)).forEach(book -> booksByIsbn13.put(book.getIsbn13(), book));
+        return booksByIsbn13;
+    }
+
+    /**
+     * The books with the given ids, in the order of the ids; the ids of missing books are skipped.
+     */
+    public List<BookView> findByIds(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        Map<Long, BookView> booksById = new HashMap<>(ids.size() * 2);
+        withReviewers(bookRepository.findViewsByIdIn(ids)).forEach(book -> booksById.put(book.getId(), book));
+        List<BookView> books = new ArrayList<>(booksById.size());
+        for (Long id : ids) {
+            BookView book = booksById.get(id);
+            if (book != null) {
+                books.add(book);
+            }
+        }
+        return books;
+    }
+
+    /**
+     * Like findByIds, but from the primary, for refreshing a copy of the catalog.
+     */
+    @Transactional
+    public List<BookView> findByIdsFromPrimary(List<Long> ids) {
+        return findByIds(ids);
+    }
+
+    /**
+     * Passes every book to the consumer in id order, while the rows are read from a database cursor.
+     * Only the current batch of books is held in memory.
+     */
+    public void forEach(Consumer<BookView> consumer) {
+        try (Stream<BookView> views = bookRepository.streamAllViews()) {
+            List<BookView> batch = new ArrayList<>(STREAM_BATCH_SIZE);
+            for (Iterator<BookView> it = views.iterator(); it.hasNext(); ) {
+                batch.add(it.next());
+                if (batch.size() == STREAM_BATCH_SIZE || !it.hasNext()) {
+                    withReviewers(batch).forEach(consumer);
+                    batch.clear();
+                }
+            }
+        }
+    }
+
+    /**
+     * Like forEach, but from the primary, for rebuilding a copy of the catalog.
+     */
+    @Transactional
+    public void forEachFromPrimary(Consumer<BookView> consumer) {
+        forEach(consumer);
+    }
+
+    private BookView withReviewers(BookView book) {
+        if (book != null) {
+            withReviewers(Collections.singletonList(book));
+        }
+        return book;
+    }
+
+    private List<BookView> withReviewers(List<BookView> books) {
+        if (books.isEmpty()) {
+            return books;
+        }
+        Map<Long, BookView> booksById = new HashMap<>(books.size() * 2);
+        books.forEach(book -> booksById.put(book.getId(), book));
+        Map<Long, List<ReviewerView>> reviewersByBookId = new HashMap<>();
+        for (ReviewerView reviewer : bookRepository.findReviewerViewsByBookIdIn(booksById.keySet())) {
+            reviewersByBookId.computeIfAbsent(reviewer.getBookId(), id -> new ArrayList<>()).add(reviewer);
+        }
+        reviewersByBookId.forEach((bookId, reviewers) -> booksById.get(bookId).setReviewers(reviewers));
+        return books;
+    }
+}
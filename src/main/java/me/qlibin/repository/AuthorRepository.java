@@ -1,8 +1,18 @@
 package me.qlibin.repository;
 
 import me.qlibin.entity.Author;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.PagingAndSortingRepository;
 import org.springframework.data.rest.core.annotation.RepositoryRestResource;
+import org.springframework.data.rest.core.annotation.RestResource;
+
+import javax.persistence.QueryHint;
+
+import static org.hibernate.jpa.QueryHints.HINT_CACHEABLE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
 
 /**
  * The reason that we've decided to do this is to get the extra benefits provided by the PagingAndSortingRepository.
@@ -21,4 +31,24 @@ import org.springframework.data.rest.core.annotation.RepositoryRestResource;
  */
 @RepositoryRestResource
 public interface AuthorRepository extends PagingAndSortingRepository<Author, Long> {
+    /**
+     * The collection resources of Spring Data REST only render what they read, so the entities are loaded
+     * read-only: Hibernate keeps no snapshot of their state and never dirty-checks them at flush time.
+     * Only the collection reads are marked, as PUT and PATCH change the entities loaded by findOne.
+     * The pages are also kept in the query cache, which stores the ids of the page and gets the entities from
+     * the second-level cache; a page is invalidated whenever its table is written through Hibernate.
+     * PublisherRepository and ReviewerRepository do the same.
+     */
+    @Override
+    @QueryHints({@QueryHint(name = HINT_READONLY, value = "true"), @QueryHint(name = HINT_CACHEABLE, value = "true")})
+    public Page<Author> findAll(Pageable pageable);
+
+    /**
+     * Keyset (seek) pages for the "after" listing of ReferenceDataController: continues right after the last id
+     * the client has seen, and reads one row more than the page size to know whether there is a next page,
+     * instead of counting the whole table. Not exported as a search resource of its own.
+     */
+    @RestResource(exported = false)
+    @QueryHints(@QueryHint(name = HINT_READONLY, value = "true"))
+    public Slice<Author> findByIdGreaterThanOrderByIdAsc(Long after, Pageable pageable);
 }
@@ -1,8 +1,99 @@
 package me.qlibin.repository;
 
+import me.qlibin.dto.BookVersion;
+import me.qlibin.dto.BookView;
+import me.qlibin.dto.ReviewerView;
 import me.qlibin.entity.Book;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 
+import javax.persistence.QueryHint;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+
+/**
+ * The @EntityGraph annotated methods are the fetch plans available to the callers: each of them loads
+ * the books together with the associations named in the graph in a fixed number of queries,
+ * no matter how many rows come back. They are meant for code that works with the entities;
+ * the /books endpoints only read, and use the BookView queries below.
+ */
 public interface BookRepository extends CrudRepository<Book, Long> {
     public Book findBookByIsbn(String isbn);
+
+    @EntityGraph(Book.DETAIL_GRAPH)
+    public Book findDetailedByIsbn13(Long isbn13);
+
+    @EntityGraph(Book.DETAIL_GRAPH)
+    public Book findDetailedById(Long id);
+
+    /**
+     * The versions of a book and of everything rendered with it, in one row, see BookVersion.
+     */
+    String BOOK_VERSION = "select new me.qlibin.dto.BookVersion(b.id, b.version, b.lastModified, " +
+            "a.version, a.lastModified, p.version, p.lastModified, sum(r.version), max(r.lastModified)) " +
+            "from Book b left join b.author a left join b.publisher p left join b.reviewers r";
+    String BOOK_VERSION_GROUP_BY = " group by b.id, b.version, b.lastModified, " +
+            "a.version, a.lastModified, p.version, p.lastModified";
+
+    @Query(BOOK_VERSION + " where b.isbn13 = :isbn13" + BOOK_VERSION_GROUP_BY)
+    public BookVersion findVersionByIsbn13(@Param("isbn13") Long isbn13);
+
+    @Query(BOOK_VERSION + " where b.id = :id" + BOOK_VERSION_GROUP_BY)
+    public BookVersion findVersionById(@Param("id") Long id);
+
+    @EntityGraph(Book.DETAIL_GRAPH)
+    @Query("select distinct b from Book b order by b.id")
+    public List<Book> findAllDetailed();
+
+    /**
+     * The read model queries: constructor expressions that select only the rendered columns into BookView,
+     * see BookReadModel. The author and publisher are left joins, so a book without them is still found.
+     */
+    String BOOK_VIEW = "select new me.qlibin.dto.BookView(b.id, b.isbn, b.isbn13, b.title, b.description, " +
+            "b.version, b.lastModified, a.id, a.firstName, a.lastName, a.version, a.lastModified, " +
+            "p.id, p.name, p.version, p.lastModified) " +
+            "from Book b left join b.author a left join b.publisher p";
+
+    @Query(BOOK_VIEW + " where b.isbn13 = :isbn13")
+    public BookView findViewByIsbn13(@Param("isbn13") Long isbn13);
+
+    @Query(BOOK_VIEW + " where b.id = :id")
+    public BookView findViewById(@Param("id") Long id);
+
+    @Query(BOOK_VIEW + " order by b.id")
+    public List<BookView> findAllViews();
+
+    @Query(BOOK_VIEW + " where b.isbn13 in :isbn13s")
+    public List<BookView> findViewsByIsbn13In(@Param("isbn13s") Collection<Long> isbn13s);
+
+    @Query(BOOK_VIEW + " where b.id in :ids")
+    public List<BookView> findViewsByIdIn(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Keyset (seek) pagination: instead of skipping OFFSET rows, we continue right after the last id
+     * the client has seen, so every page costs the same index range scan no matter how deep it is.
+     * Only the page size of the Pageable is used, the ordering is fixed by the query.
+     */
+    @Query(BOOK_VIEW + " where b.id > :after order by b.id")
+    public List<BookView> findViewsAfter(@Param("after") Long after, Pageable pageable);
+
+    /**
+     * Stream-returning query methods are backed by a forward-only cursor, so rows are read from the
+     * database as the stream is consumed. The stream must be consumed inside a transaction and closed afterwards.
+     */
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "100"))
+    @Query(BOOK_VIEW + " order by b.id")
+    public Stream<BookView> streamAllViews();
+
+    @Query("select new me.qlibin.dto.ReviewerView(b.id, r.id, r.firstName, r.lastName, " +
+            "r.version, r.lastModified) " +
+            "from Book b join b.reviewers r where b.id in :bookIds")
+    public List<ReviewerView> findReviewerViewsByBookIdIn(@Param("bookIds") Collection<Long> bookIds);
 }
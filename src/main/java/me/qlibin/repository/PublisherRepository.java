@@ -1,11 +1,27 @@
 package me.qlibin.repository;
 
 import me.qlibin.entity.Publisher;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.PagingAndSortingRepository;
 import org.springframework.data.rest.core.annotation.RepositoryRestResource;
+import org.springframework.data.rest.core.annotation.RestResource;
+
+import javax.persistence.QueryHint;
+
+import static org.hibernate.jpa.QueryHints.HINT_CACHEABLE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
 
 @RepositoryRestResource
 public interface PublisherRepository extends
         PagingAndSortingRepository<Publisher, Long> {
-}
+    @Override
+    @QueryHints({@QueryHint(name = HINT_READONLY, value = "true"), @QueryHint(name = HINT_CACHEABLE, value = "true")})
+    public Page<Publisher> findAll(Pageable pageable);
 
+    @RestResource(exported = false)
+    @QueryHints(@QueryHint(name = HINT_READONLY, value = "true"))
+    public Slice<Publisher> findByIdGreaterThanOrderByIdAsc(Long after, Pageable pageable);
+}
@@ -1,11 +1,27 @@
 package me.qlibin.repository;
 
 import me.qlibin.entity.Reviewer;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.PagingAndSortingRepository;
 import org.springframework.data.rest.core.annotation.RepositoryRestResource;
+import org.springframework.data.rest.core.annotation.RestResource;
+
+import javax.persistence.QueryHint;
+
+import static org.hibernate.jpa.QueryHints.HINT_CACHEABLE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
 
 @RepositoryRestResource
 public interface ReviewerRepository extends
         PagingAndSortingRepository<Reviewer, Long> {
-}
+    @Override
+    @QueryHints({@QueryHint(name = HINT_READONLY, value = "true"), @QueryHint(name = HINT_CACHEABLE, value = "true")})
+    public Page<Reviewer> findAll(Pageable pageable);
 
+    @RestResource(exported = false)
+    @QueryHints(@QueryHint(name = HINT_READONLY, value = "true"))
+    public Slice<Reviewer> findByIdGreaterThanOrderByIdAsc(Long after, Pageable pageable);
+}
@@ -0,0 +1,403 @@
+package me.qlibin.search;
+
+import me.qlibin.dto.AuthorView;
+import me.qlibin.entity.Author;
+import me.qlibin.entity.Book;
+import me.qlibin.events.EntityChangeEvent;
+import me.qlibin.readmodel.BookReadModel;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.text.Normalizer;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+/**
+ * In-process inverted index over the title, description and author name of every book.
+ *
+ * Every field is split into lower-case tokens without accents, and each token has a posting map
+ * from book id to weight: a token in the title counts more than one in the author name, which counts more
+ * than one in the description. A query matches the books that contain all of its tokens, the last one
+ * as a prefix too, so results come up while the user is still typing.
+ *
+ * Every prefix of a token, from MIN_PREFIX_LENGTH characters on, has a posting of its own, which keeps
+ * only the PREFIX_POSTING_SIZE books the prefix weighs the most in. So a short prefix costs no more than
+ * that however many terms start with it, but it also finds no more than those books, and the total of such
+ * a query counts only them. A posting that loses books to deletes is not refilled before the next rebuild.
+ *
+ * The books are ranked by the sum of the weights of the matched tokens, each multiplied by how rare
+ * the token is (its inverse document frequency). The work of a query is proportional to the postings
+ * of its whole tokens, i.e. to the number of books that contain them, plus at most PREFIX_POSTING_SIZE
+ * for the prefix; it does not grow with the catalog beyond that.
+ *
+ * The index is built from BookReadModel when the application starts, then follows the committed changes
+ * reported by EntityChangeEvent. Books inserted without Hibernate are added by their writer,
+ * see CatalogImporter, and a periodic rebuild catches anything else.
+ */
+@Component
+public class BookSearchIndex {
+    private final Log logger = LogFactory.getLog(getClass());
+
+    static final float TITLE_WEIGHT = 3f;
+    static final float AUTHOR_WEIGHT = 2f;
+    static final float DESCRIPTION_WEIGHT = 1f;
+    /** A prefix that matches less than this many characters is too broad to be worth expanding. */
+    static final int MIN_PREFIX_LENGTH = 2;
+    /** A token that only matches as a prefix counts less than a whole one. */
+    static final float PREFIX_DISCOUNT = 0.5f;
+    /** The most books a prefix posting keeps, a generous page of suggestions. */
+    static final int PREFIX_POSTING_SIZE = 1000;
+
+    private static final Pattern NON_TOKEN = Pattern.compile("[^\\p{L}\\p{Nd}]+");
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+
+    @Autowired
+    private BookReadModel bookReadModel;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private Index index = new Index();
+
+    @PostConstruct
+    public void build() {
+        long start = System.currentTimeMillis();
+        Index rebuilt = new Index();
+        bookReadModel.forEach(book -> {
+            AuthorView author = book.getAuthor();
+            rebuilt.put(new Document(book.getId(), book.getTitle(), book.getDescription(),
+                    author != null ? author.getId() : null,
+                    author != null ? authorName(author.getFirstName(), author.getLastName()) : null));
+        });
+        lock.writeLock().lock();
+        try {
+            index = rebuilt;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        logger.info(String.format("Indexed %d books in %d ms", rebuilt.documents.size(),
+                System.currentTimeMillis() - start));
+    }
+
+    /**
+     * Changes that commit while the index is rebuilt may be missed; they are caught up by the next rebuild.
+     */
+    @Scheduled(initialDelayString = "${cookbook.search.rebuild-interval-ms:3600000}",
+            fixedDelayString = "${cookbook.search.rebuild-interval-ms:3600000}")
+    public void rebuild() {
+        build();
+    }
+
+    /**
+     * Adds the book, or replaces what the index knows about it.
+     */
+    public void index(long bookId, String title, String description,
+                      Long authorId, String authorFirstName, String authorLastName) {
+        Document document = new Document(bookId, title, description, authorId,
+                authorName(authorFirstName, authorLastName));
+        lock.writeLock().lock();
+        try {
+            index.put(document);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(long bookId) {
+        lock.writeLock().lock();
+        try {
+            index.remove(bookId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @EventListener
+    public void onEntityChange(EntityChangeEvent event) {
+        if (event.isAbout(Book.class)) {
+            Book book = (Book) event.getEntity();
+            if (event.getKind() == EntityChangeEvent.Kind.DELETE) {
+                remove(book.getId());
+            } else {
+                Author author = book.getAuthor();
+                index(book.getId(), book.getTitle(), book.getDescription(),
+                        author != null ? author.getId() : null,
+                        author != null ? author.getFirstName() : null,
+                        author != null ? author.getLastName() : null);
+            }
+        } else if (event.isAbout(Author.class) && event.getKind() == EntityChangeEvent.Kind.UPDATE) {
+            Author author = (Author) event.getEntity();
+            lock.writeLock().lock();
+            try {
+                index.renameAuthor(author.getId(), authorName(author.getFirstName(), author.getLastName()));
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * The ids of the best matching books, best first, and the total number of matches.
+     */
+    public Result search(String query, int offset, int limit) {
+        List<String> tokens = tokenize(query);
+        if (tokens.isEmpty() || limit <= 0) {
+            return new Result(Collections.emptyList(), 0);
+        }
+        lock.readLock().lock();
+        try {
+            return index.search(tokens, offset, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return index.documents.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    static List<String> tokenize(String text) {
+        if (text == null) {
+            return Collections.emptyList();
+        }
+        String folded = MARKS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("")
+                .toLowerCase(Locale.ROOT);
+        List<String> tokens = new ArrayList<>();
+        for (String token : NON_TOKEN.split(folded)) {
+            if (!token.isEmpty()) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+
+    private static String authorName(String firstName, String lastName) {
+        return (firstName != null ? firstName : "") + " " + (lastName != null ? lastName : "");
+    }
+
+    public static class Result {
+        private final List<Long> bookIds;
+        private final int total;
+
+        Result(List<Long> bookIds, int total) {
+            this.bookIds = bookIds;
+            this.total = total;
+        }
+
+        public List<Long> getBookIds() {
+            return bookIds;
+        }
+
+        public int getTotal() {
+            return total;
+        }
+    }
+
+    private static final class Document {
+        private final long bookId;
+        private final String title;
+        private final String description;
+        private final Long authorId;
+        private final Map<String, Float> weights = new HashMap<>();
+        /** The best weight of the tokens that each prefix is the start of, but not the whole of. */
+        private final Map<String, Float> prefixWeights = new HashMap<>();
+
+        private Document(long bookId, String title, String description, Long authorId, String authorName) {
+            this.bookId = bookId;
+            this.title = title;
+            this.description = description;
+            this.authorId = authorId;
+            addTokens(title, TITLE_WEIGHT);
+            addTokens(authorName, AUTHOR_WEIGHT);
+            addTokens(description, DESCRIPTION_WEIGHT);
+            weights.forEach((token, weight) -> {
+                for (int length = MIN_PREFIX_LENGTH; length < token.length(); length++) {
+                    prefixWeights.merge(token.substring(0, length), weight, Math::max);
+                }
+            });
+        }
+
+        private void addTokens(String text, float weight) {
+            for (String token : tokenize(text)) {
+                weights.merge(token, weight, Float::sum);
+            }
+        }
+    }
+
+    /**
+     * Not thread safe; guarded by the lock of the BookSearchIndex.
+     */
+    private static final class Index {
+        private final Map<Long, Document> documents = new HashMap<>();
+        private final Map<Long, Set<Long>> bookIdsByAuthorId = new HashMap<>();
+        private final Map<String, Map<Long, Float>> postings = new HashMap<>();
+        private final Map<String, PrefixPosting> prefixPostings = new HashMap<>();
+
+        void put(Document document) {
+            remove(document.bookId);
+            documents.put(document.bookId, document);
+            if (document.authorId != null) {
+                bookIdsByAuthorId.computeIfAbsent(document.authorId, id -> new HashSet<>()).add(document.bookId);
+            }
+            document.weights.forEach((token, weight) ->
+                    postings.computeIfAbsent(token, t -> new HashMap<>()).put(document.bookId, weight));
+            document.prefixWeights.forEach((prefix, weight) ->
+                    prefixPostings.computeIfAbsent(prefix, p -> new PrefixPosting()).add(document.bookId, weight));
+        }
+
+        void remove(long bookId) {
+            Document document = documents.remove(bookId);
+            if (document == null) {
+                return;
+            }
+            if (document.authorId != null) {
+                Set<Long> bookIds = bookIdsByAuthorId.get(document.authorId);
+                bookIds.remove(bookId);
+                if (bookIds.isEmpty()) {
+                    bookIdsByAuthorId.remove(document.authorId);
+                }
+            }
+            document.weights.keySet().forEach(token -> {
+                Map<Long, Float> posting = postings.get(token);
+                posting.remove(bookId);
+                if (posting.isEmpty()) {
+                    postings.remove(token);
+                }
+            });
+            document.prefixWeights.forEach((prefix, weight) -> {
+                PrefixPosting posting = prefixPostings.get(prefix);
+                posting.remove(document.bookId, weight);
+                if (posting.documentFrequency == 0) {
+                    prefixPostings.remove(prefix);
+                }
+            });
+        }
+
+        void renameAuthor(long authorId, String authorName) {
+            Set<Long> bookIds = bookIdsByAuthorId.get(authorId);
+            if (bookIds == null) {
+                return;
+            }
+            for (Long bookId : new ArrayList<>(bookIds)) {
+                Document document = documents.get(bookId);
+                put(new Document(bookId, document.title, document.description, authorId, authorName));
+            }
+        }
+
+        Result search(List<String> tokens, int offset, int limit) {
+            List<Map<Long, Float>> matches = new ArrayList<>(tokens.size());
+            for (int i = 0; i < tokens.size(); i++) {
+                Map<Long, Float> match = match(tokens.get(i), i == tokens.size() - 1);
+                if (match.isEmpty()) {
+                    return new Result(Collections.emptyList(), 0);
+                }
+                matches.add(match);
+            }
+            // every book has to match every token, so the candidates are the books of the rarest one
+            Map<Long, Float> rarest = Collections.min(matches, Comparator.comparingInt(Map::size));
+            PriorityQueue<ScoredBook> top = new PriorityQueue<>(ScoredBook.WORST_FIRST);
+            int total = 0;
+            candidates:
+            for (Long bookId : rarest.keySet()) {
+                float score = 0;
+                for (Map<Long, Float> match : matches) {
+                    Float tokenScore = match.get(bookId);
+                    if (tokenScore == null) {
+                        continue candidates;
+                    }
+                    score += tokenScore;
+                }
+                total++;
+                top.add(new ScoredBook(bookId, score));
+                if (top.size() > offset + limit) {
+                    top.poll();
+                }
+            }
+            List<ScoredBook> ranked = new ArrayList<>(top);
+            ranked.sort(ScoredBook.WORST_FIRST.reversed());
+            List<Long> page = new ArrayList<>(limit);
+            for (int i = offset; i < ranked.size(); i++) {
+                page.add(ranked.get(i).bookId);
+            }
+            return new Result(page, total);
+        }
+
+        /**
+         * The score of the token for each book that contains it: its weight in the book times its idf.
+         * As a prefix, a book scores with the best of its terms that start with the token, at the idf of the prefix.
+         */
+        private Map<Long, Float> match(String token, boolean prefix) {
+            Map<Long, Float> scores = new HashMap<>();
+            Map<Long, Float> exact = postings.get(token);
+            if (exact != null) {
+                float idf = idf(exact.size());
+                exact.forEach((bookId, weight) -> scores.put(bookId, weight * idf));
+            }
+            PrefixPosting longer = prefix ? prefixPostings.get(token) : null;
+            if (longer != null) {
+                float idf = idf(longer.documentFrequency) * PREFIX_DISCOUNT;
+                longer.weights.forEach((bookId, weight) -> scores.merge(bookId, weight * idf, Math::max));
+            }
+            return scores;
+        }
+
+        private float idf(int documentFrequency) {
+            return (float) Math.log(1.0 + (double) documents.size() / documentFrequency);
+        }
+    }
+
+    /**
+     * The books with the highest weights for one prefix, at most PREFIX_POSTING_SIZE of them,
+     * and the number of all the books that have it.
+     */
+    private static final class PrefixPosting {
+        private final Map<Long, Float> weights = new HashMap<>();
+        private final TreeSet<ScoredBook> worstFirst = new TreeSet<>(ScoredBook.WORST_FIRST);
+        private int documentFrequency;
+
+        void add(long bookId, float weight) {
+            documentFrequency++;
+            if (weights.size() == PREFIX_POSTING_SIZE) {
+                ScoredBook worst = worstFirst.first();
+                if (ScoredBook.WORST_FIRST.compare(new ScoredBook(bookId, weight), worst) <= 0) {
+                    return;
+                }
+                worstFirst.pollFirst();
+                weights.remove(worst.bookId);
+            }
+            weights.put(bookId, weight);
+            worstFirst.add(new ScoredBook(bookId, weight));
+        }
+
+        void remove(long bookId, float weight) {
+            documentFrequency--;
+            if (weights.remove(bookId) != null) {
+                worstFirst.remove(new ScoredBook(bookId, weight));
+            }
+        }
+    }
+
+    private static final class ScoredBook {
+        /** Lowest score first, and among equal scores the highest id, so that the heap drops the right one. */
+        static final Comparator<ScoredBook> WORST_FIRST = Comparator.<ScoredBook>comparingDouble(b -> b.score)
+                .thenComparing(Comparator.<ScoredBook>comparingLong(b -> b.bookId).reversed());
+
+        private final long bookId;
+        private final float score;
+
+        private ScoredBook(long bookId, float score) {
+            this.bookId = bookId;
+            this.score = score;
+        }
+    }
+}
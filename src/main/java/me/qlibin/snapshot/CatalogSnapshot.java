@@ -0,0 +1,416 @@
+package me.qlibin.snapshot;
+
+import me.qlibin.dto.AuthorView;
+import me.qlibin.dto.BookVersion;
+import me.qlibin.dto.BookView;
+import me.qlibin.dto.PublisherView;
+import me.qlibin.dto.ReviewerView;
+
+import java.util.*;
+import java.util.stream.IntStream;
+
+/**
+ * An immutable, column-oriented copy of the book table, for reads that do not need the database at all.
+ *
+ * Every book is a row index into a set of primitive arrays sorted by ISBN-13, so a lookup by ISBN is a binary
+ * search over a long[], and a second, id-ordered long[] finds books by id. The authors, publishers and reviewers
+ * are stored once each in small dictionaries that the rows point to by int index, the reviewers of a book being
+ * a range of one shared int[]. The names in the dictionaries are deduplicated with a map that lives as long as
+ * the build, so a first name shared by many people is kept once; titles and descriptions are all but unique
+ * to their book and are kept as they were read. (Not with String.intern(), whose table is shared by the whole
+ * JVM and gets slow to fill with a large catalog.) What this costs per book is a few dozen bytes of arrays
+ * plus its strings, where a managed Book brings its entity, its EntityEntry and loaded state in the persistence
+ * context, a proxy or two and a lazy collection. BookViews are only created when a book is read, and are not kept.
+ *
+ * A snapshot is never changed: withChanges() returns a new one that shares nothing mutable with it,
+ * so readers need no locks, and a reader that got hold of a snapshot keeps seeing the same catalog.
+ */
+public final class CatalogSnapshot {
+    /** Stands for a null in the long columns; no id, version, date or ISBN-13 takes this value. */
+    private static final long NULL = Long.MIN_VALUE;
+    /** The books without a valid ISBN-13 are sorted last, and can only be found by id. */
+    private static final long NO_ISBN13 = Long.MAX_VALUE;
+    private static final int NONE = -1;
+
+    private final int size;
+    private final long[] isbn13s;
+    private final long[] ids;
+    private final String[] isbns;
+    private final String[] titles;
+    private final String[] descriptions;
+    private final long[] versions;
+    private final long[] lastModified;
+    private final int[] authors;
+    private final int[] publishers;
+    /** The reviewers of row r are reviewers[reviewerOffsets[r]] up to reviewers[reviewerOffsets[r + 1]]. */
+    private final int[] reviewerOffsets;
+    private final int[] reviewers;
+
+    /** The ids in ascending order, and the row of each of them. */
+    private final long[] sortedIds;
+    private final int[] rowsById;
+
+    private final Names authorNames;
+    private final Names publisherNames;
+    private final Names reviewerNames;
+
+    private CatalogSnapshot(Builder builder) {
+        size = builder.size;
+        isbn13s = Arrays.copyOf(builder.isbn13s, size);
+        ids = Arrays.copyOf(builder.ids, size);
+        isbns = Arrays.copyOf(builder.isbns, size);
+        titles = Arrays.copyOf(builder.titles, size);
+        descriptions = Arrays.copyOf(builder.descriptions, size);
+        versions = Arrays.copyOf(builder.versions, size);
+        lastModified = Arrays.copyOf(builder.lastModified, size);
+        authors = Arrays.copyOf(builder.authors, size);
+        publishers = Arrays.copyOf(builder.publishers, size);
+        reviewerOffsets = Arrays.copyOf(builder.reviewerOffsets, size + 1);
+        reviewers = Arrays.copyOf(builder.reviewers, reviewerOffsets[size]);
+        rowsById = IntStream.range(0, size).boxed()
+                .sorted(Comparator.comparingLong(row -> ids[row]))
+                .mapToInt(Integer::intValue).toArray();
+        sortedIds = new long[size];
+        for (int i = 0; i < size; i++) {
+            sortedIds[i] = ids[rowsById[i]];
+        }
+        authorNames = builder.authorNames.build();
+        publisherNames = builder.publisherNames.build();
+        reviewerNames = builder.reviewerNames.build();
+    }
+
+    public static CatalogSnapshot of(Collection<BookView> books) {
+        List<BookView> sorted = new ArrayList<>(books);
+        sorted.sort(Comparator.comparingLong(CatalogSnapshot::isbn13Of));
+        Builder builder = new Builder(sorted.size(), null);
+        sorted.forEach(builder::add);
+        return new CatalogSnapshot(builder);
+    }
+
+    /**
+     * A new snapshot in which the changed books replace the rows with the same ids, or are added,
+     * and the removed ids are gone. The rows that did not change are copied column by column,
+     * without turning them into BookViews, and the dictionaries are carried over, so the cost is a copy
+     * of the arrays plus the changed books only.
+     */
+    public CatalogSnapshot withChanges(Collection<BookView> changed, Collection<Long> removedIds) {
+        Set<Long> replaced = new HashSet<>(removedIds);
+        changed.forEach(book -> replaced.add(book.getId()));
+        List<BookView> added = new ArrayList<>(changed);
+        added.sort(Comparator.comparingLong(CatalogSnapshot::isbn13Of));
+
+        Builder builder = new Builder(size + added.size(), this);
+        int next = 0;
+        for (int row = 0; row < size; row++) {
+            if (replaced.contains(ids[row])) {
+                continue;
+            }
+            while (next < added.size() && isbn13Of(added.get(next)) < isbn13s[row]) {
+                builder.add(added.get(next++));
+            }
+            builder.copy(this, row);
+        }
+        while (next < added.size()) {
+            builder.add(added.get(next++));
+        }
+        return new CatalogSnapshot(builder);
+    }
+
+    public BookView findByIsbn13(long isbn13) {
+        int row = Arrays.binarySearch(isbn13s, isbn13);
+        return row >= 0 && isbn13 != NO_ISBN13 ? view(row) : null;
+    }
+
+    public BookView findById(long id) {
+        int index = Arrays.binarySearch(sortedIds, id);
+        return index >= 0 ? view(rowsById[index]) : null;
+    }
+
+    /**
+     * The version of the book as this snapshot renders it, read from the columns without creating the BookView.
+     */
+    public BookVersion findVersionByIsbn13(long isbn13) {
+        int row = Arrays.binarySearch(isbn13s, isbn13);
+        return row >= 0 && isbn13 != NO_ISBN13 ? version(row) : null;
+    }
+
+    public BookVersion findVersionById(long id) {
+        int index = Arrays.binarySearch(sortedIds, id);
+        return index >= 0 ? version(rowsById[index]) : null;
+    }
+
+    /**
+     * Every book, in id order, like BookReadModel.findAll().
+     */
+    public List<BookView> findAll() {
+        List<BookView> books = new ArrayList<>(size);
+        for (int row : rowsById) {
+            books.add(view(row));
+        }
+        return books;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getAuthorCount() {
+        return authorNames.ids.length;
+    }
+
+    public int getPublisherCount() {
+        return publisherNames.ids.length;
+    }
+
+    public int getReviewerCount() {
+        return reviewerNames.ids.length;
+    }
+
+    private BookVersion version(int row) {
+        int author = authors[row];
+        int publisher = publishers[row];
+        long reviewersVersion = 0;
+        long reviewersLastModified = NULL;
+        for (int i = reviewerOffsets[row]; i < reviewerOffsets[row + 1]; i++) {
+            Long version = reviewerNames.version(reviewers[i]);
+            reviewersVersion += version != null ? version : 0;
+            reviewersLastModified = Math.max(reviewersLastModified, reviewerNames.lastModified[reviewers[i]]);
+        }
+        return new BookVersion(ids[row], versions[row] != NULL ? versions[row] : null,
+                lastModified[row] != NULL ? new Date(lastModified[row]) : null,
+                author != NONE ? authorNames.version(author) : null,
+                author != NONE ? authorNames.lastModified(author) : null,
+                publisher != NONE ? publisherNames.version(publisher) : null,
+                publisher != NONE ? publisherNames.lastModified(publisher) : null,
+                reviewersVersion, reviewersLastModified != NULL ? new Date(reviewersLastModified) : null);
+    }
+
+    private BookView view(int row) {
+        int author = authors[row];
+        int publisher = publishers[row];
+        BookView book = new BookView(ids[row], isbns[row], isbn13s[row] != NO_ISBN13 ? isbn13s[row] : null,
+                titles[row], descriptions[row],
+                versions[row] != NULL ? versions[row] : null,
+                lastModified[row] != NULL ? new Date(lastModified[row]) : null,
+                author != NONE ? authorNames.ids[author] : null,
+                author != NONE ? authorNames.first[author] : null,
+                author != NONE ? authorNames.second[author] : null,
+                author != NONE ? authorNames.version(author) : null,
+                author != NONE ? authorNames.lastModified(author) : null,
+                publisher != NONE ? publisherNames.ids[publisher] : null,
+                publisher != NONE ? publisherNames.first[publisher] : null,
+                publisher != NONE ? publisherNames.version(publisher) : null,
+                publisher != NONE ? publisherNames.lastModified(publisher) : null);
+        int from = reviewerOffsets[row];
+        int to = reviewerOffsets[row + 1];
+        if (to > from) {
+            List<ReviewerView> bookReviewers = new ArrayList<>(to - from);
+            for (int i = from; i < to; i++) {
+                int reviewer = reviewers[i];
+                bookReviewers.add(new ReviewerView(ids[row], reviewerNames.ids[reviewer],
+                        reviewerNames.first[reviewer], reviewerNames.second[reviewer],
+                        reviewerNames.version(reviewer), reviewerNames.lastModified(reviewer)));
+            }
+            book.setReviewers(bookReviewers);
+        }
+        return book;
+    }
+
+    private static long isbn13Of(BookView book) {
+        return book.getIsbn13() != null ? book.getIsbn13() : NO_ISBN13;
+    }
+
+    private static long orNull(Long value) {
+        return value != null ? value : NULL;
+    }
+
+    private static long orNull(Date value) {
+        return value != null ? value.getTime() : NULL;
+    }
+
+    /**
+     * A dictionary of people or publishers: the id, one or two names, and the version and modification date
+     * of each, by index.
+     */
+    private static final class Names {
+        private final long[] ids;
+        private final String[] first;
+        private final String[] second;
+        private final long[] versions;
+        private final long[] lastModified;
+
+        private Names(long[] ids, String[] first, String[] second, long[] versions, long[] lastModified) {
+            this.ids = ids;
+            this.first = first;
+            this.second = second;
+            this.versions = versions;
+            this.lastModified = lastModified;
+        }
+
+        private Long version(int index) {
+            return versions[index] != NULL ? versions[index] : null;
+        }
+
+        private Date lastModified(int index) {
+            return lastModified[index] != NULL ? new Date(lastModified[index]) : null;
+        }
+    }
+
+    private static final class NamesBuilder {
+        private final Map<Long, Integer> indexById = new HashMap<>();
+        /** The names seen by this build, shared by the dictionaries of one Builder. */
+        private final Map<String, String> distinctNames;
+        private long[] ids;
+        private String[] first;
+        private String[] second;
+        private long[] versions;
+        private long[] lastModified;
+        private int size;
+
+        /**
+         * Starts from the dictionary of the snapshot being changed, so that the indices of its rows stay valid.
+         */
+        private NamesBuilder(Names names, Map<String, String> distinctNames) {
+            this.distinctNames = distinctNames;
+            ids = names != null ? names.ids.clone() : new long[16];
+            first = names != null ? names.first.clone() : new String[16];
+            second = names != null ? names.second.clone() : new String[16];
+            versions = names != null ? names.versions.clone() : new long[16];
+            lastModified = names != null ? names.lastModified.clone() : new long[16];
+            size = names != null ? names.ids.length : 0;
+            for (int i = 0; i < size; i++) {
+                indexById.put(ids[i], i);
+            }
+        }
+
+        /**
+         * The index of the entry with this id; the names and version of an existing entry are replaced,
+         * as they come from a book read after the ones already in the dictionary.
+         */
+        private int put(Long id, String firstName, String secondName, Long version, Date modified) {
+            if (id == null) {
+                return NONE;
+            }
+            Integer index = indexById.get(id);
+            if (index == null) {
+                if (size == ids.length) {
+                    int capacity = Math.max(16, size * 2);
+                    ids = Arrays.copyOf(ids, capacity);
+                    first = Arrays.copyOf(first, capacity);
+                    second = Arrays.copyOf(second, capacity);
+                    versions = Arrays.copyOf(versions, capacity);
+                    lastModified = Arrays.copyOf(lastModified, capacity);
+                }
+                index = size++;
+                indexById.put(id, index);
+                ids[index] = id;
+            }
+            first[index] = distinct(firstName);
+            second[index] = distinct(secondName);
+            versions[index] = orNull(version);
+            lastModified[index] = orNull(modified);
+            return index;
+        }
+
+        private String distinct(String name) {
+            if (name == null) {
+                return null;
+            }
+            String seen = distinctNames.putIfAbsent(name, name);
+            return seen != null ? seen : name;
+        }
+
+        private Names build() {
+            return new Names(Arrays.copyOf(ids, size), Arrays.copyOf(first, size), Arrays.copyOf(second, size),
+                    Arrays.copyOf(versions, size), Arrays.copyOf(lastModified, size));
+        }
+    }
+
+    private static final class Builder {
+        private int size;
+        private final long[] isbn13s;
+        private final long[] ids;
+        private final String[] isbns;
+        private final String[] titles;
+        private final String[] descriptions;
+        private final long[] versions;
+        private final long[] lastModified;
+        private final int[] authors;
+        private final int[] publishers;
+        private final int[] reviewerOffsets;
+        private int[] reviewers;
+        private final NamesBuilder authorNames;
+        private final NamesBuilder publisherNames;
+        private final NamesBuilder reviewerNames;
+
+        private Builder(int capacity, CatalogSnapshot previous) {
+            isbn13s = new long[capacity];
+            ids = new long[capacity];
+            isbns = new String[capacity];
+            titles = new String[capacity];
+            descriptions = new String[capacity];
+            versions = new long[capacity];
+            lastModified = new long[capacity];
+            authors = new int[capacity];
+            publishers = new int[capacity];
+            reviewerOffsets = new int[capacity + 1];
+            reviewers = new int[previous != null ? previous.reviewers.length + 16 : capacity];
+            Map<String, String> distinctNames = new HashMap<>();
+            authorNames = new NamesBuilder(previous != null ? previous.authorNames : null, distinctNames);
+            publisherNames = new NamesBuilder(previous != null ? previous.publisherNames : null, distinctNames);
+            reviewerNames = new NamesBuilder(previous != null ? previous.reviewerNames : null, distinctNames);
+        }
+
+        private void add(BookView book) {
+            int row = size++;
+            isbn13s[row] = isbn13Of(book);
+            ids[row] = book.getId();
+            isbns[row] = book.getIsbn();
+            titles[row] = book.getTitle();
+            descriptions[row] = book.getDescription();
+            versions[row] = orNull(book.getVersion());
+            lastModified[row] = orNull(book.getLastModified());
+            AuthorView author = book.getAuthor();
+            authors[row] = author != null ? authorNames.put(author.getId(), author.getFirstName(),
+                    author.getLastName(), author.getVersion(), author.getLastModified()) : NONE;
+            PublisherView publisher = book.getPublisher();
+            publishers[row] = publisher != null ? publisherNames.put(publisher.getId(), publisher.getName(),
+                    null, publisher.getVersion(), publisher.getLastModified()) : NONE;
+            int offset = reviewerOffsets[row];
+            ensureReviewerCapacity(offset + book.getReviewers().size());
+            for (ReviewerView reviewer : book.getReviewers()) {
+                reviewers[offset++] = reviewerNames.put(reviewer.getId(), reviewer.getFirstName(),
+                        reviewer.getLastName(), reviewer.getVersion(), reviewer.getLastModified());
+            }
+            reviewerOffsets[row + 1] = offset;
+        }
+
+        /**
+         * Copies a row of the snapshot this builder was started from; its dictionary indices are still valid here.
+         */
+        private void copy(CatalogSnapshot snapshot, int from) {
+            int row = size++;
+            isbn13s[row] = snapshot.isbn13s[from];
+            ids[row] = snapshot.ids[from];
+            isbns[row] = snapshot.isbns[from];
+            titles[row] = snapshot.titles[from];
+            descriptions[row] = snapshot.descriptions[from];
+            versions[row] = snapshot.versions[from];
+            lastModified[row] = snapshot.lastModified[from];
+            authors[row] = snapshot.authors[from];
+            publishers[row] = snapshot.publishers[from];
+            int start = snapshot.reviewerOffsets[from];
+            int count = snapshot.reviewerOffsets[from + 1] - start;
+            int offset = reviewerOffsets[row];
+            ensureReviewerCapacity(offset + count);
+            System.arraycopy(snapshot.reviewers, start, reviewers, offset, count);
+            reviewerOffsets[row + 1] = offset + count;
+        }
+
+        private void ensureReviewerCapacity(int capacity) {
+            if (capacity > reviewers.length) {
+                reviewers = Arrays.copyOf(reviewers, Math.max(capacity, reviewers.length * 2));
+            }
+        }
+    }
+}
@@ -0,0 +1,247 @@
+package me.qlibin.snapshot;
+
+import me.qlibin.dto.BookView;
+import me.qlibin.entity.Author;
+import me.qlibin.entity.Book;
+import me.qlibin.entity.Publisher;
+import me.qlibin.entity.Reviewer;
+import me.qlibin.events.EntityChangeEvent;
+import me.qlibin.readmodel.BookReadModel;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the current CatalogSnapshot, when cookbook.snapshot.enabled is set; BookController and BookFormatter
+ * then serve the books from it instead of BookReadModel.
+ *
+ * The snapshot is built from BookReadModel when the application starts. After that, the ids of the books
+ * changed by committed transactions (see EntityChangeEvent, and CatalogImporter for the books it inserts
+ * with JDBC) are collected, and every refresh-interval-ms the refresher reads only those books and swaps in
+ * a new snapshot with them replaced, see CatalogSnapshot.withChanges(). Changes to authors, publishers or
+ * reviewers may concern any number of books and are rare, so they are handled with a full rebuild, as is
+ * anything that might have been missed, every rebuild-interval-ms.
+ *
+ * So the snapshot lags the database by up to the refresh interval: a client does not necessarily read
+ * its own write right away. The ids are taken before the books are read, so a change committed during
+ * a refresh is only picked up by the next one, never lost.
+ */
+@Component
+public class CatalogSnapshots {
+    private final Log logger = LogFactory.getLog(getClass());
+
+    /** The most changed books read with one query. */
+    static final int REFRESH_BATCH_SIZE = 500;
+
+    @Value("${cookbook.snapshot.enabled:false}")
+    private boolean enabled;
+
+    @Autowired
+    private BookReadModel bookReadModel;
+
+    private volatile CatalogSnapshot snapshot;
+
+    /** Guarded by itself, like rebuildRequested. */
+    private final Set<Long> changedBookIds = new HashSet<>();
+    private boolean rebuildRequested;
+
+    /** Held while a new snapshot is made, so there is one refresher at a time. */
+    private final Object refreshLock = new Object();
+
+    private final AtomicLong rebuilds = new AtomicLong();
+    private final AtomicLong refreshes = new AtomicLong();
+    private final AtomicLong refreshedBooks = new AtomicLong();
+    private volatile long lastRefreshMillis;
+
+    @PostConstruct
+    public void init() {
+        if (enabled) {
+            rebuild();
+        }
+    }
+
+    /**
+     * The current snapshot, or null when the snapshot read path is disabled.
+     */
+    public CatalogSnapshot get() {
+        return snapshot;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void booksChanged(Collection<Long> bookIds) {
+        if (enabled) {
+            synchronized (changedBookIds) {
+                changedBookIds.addAll(bookIds);
+            }
+        }
+    }
+
+    @EventListener
+    public void onEntityChange(EntityChangeEvent event) {
+        if (!enabled) {
+            return;
+        }
+        if (event.isAbout(Book.class)) {
+            booksChanged(Collections.singleton((Long) event.getId()));
+        } else if (event.getKind() != EntityChangeEvent.Kind.INSERT
+                && (event.isAbout(Author.class) || event.isAbout(Publisher.class) || event.isAbout(Reviewer.class))) {
+            synchronized (changedBookIds) {
+                rebuildRequested = true;
+            }
+        }
+    }
+
+    /**
+     * Applies the changes collected since the last refresh.
+     */
+    @Scheduled(fixedDelayString = "${cookbook.snapshot.refresh-interval-ms:200}")
+    public void refresh() {
+        if (!enabled) {
+            return;
+        }
+        synchronized (refreshLock) {
+            List<Long> bookIds;
+            boolean rebuild;
+            synchronized (changedBookIds) {
+                bookIds = new ArrayList<>(changedBookIds);
+                rebuild = rebuildRequested;
+                changedBookIds.clear();
+                rebuildRequested = false;
+            }
+            if (rebuild || snapshot == null) {
+                rebuild();
+                return;
+            }
+            if (bookIds.isEmpty()) {
+                return;
+            }
+            long start = System.currentTimeMillis();
+            List<BookView> changed = new ArrayList<>(bookIds.size());
+            for (int from = 0; from < bookIds.size(); from += REFRESH_BATCH_SIZE) {
+                changed.addAll(bookReadModel.findByIdsFromPrimary(
+                        bookIds.subList(from, Math.min(from + REFRESH_BATCH_SIZE, bookIds.size()))));
+            }
+            Set<Long> removed = new HashSet<>(bookIds);
+            changed.forEach(book -> removed.remove(book.getId()));
+            snapshot = snapshot.withChanges(changed, removed);
+            refreshes.incrementAndGet();
+            refreshedBooks.addAndGet(bookIds.size());
+            lastRefreshMillis = System.currentTimeMillis() - start;
+        }
+    }
+
+    /**
+     * Reads the whole catalog into a new snapshot.
+     */
+    @Scheduled(initialDelayString = "${cookbook.snapshot.rebuild-interval-ms:3600000}",
+            fixedDelayString = "${cookbook.snapshot.rebuild-interval-ms:3600000}")
+    public void rebuild() {
+        if (!enabled) {
+            return;
+        }
+        synchronized (refreshLock) {
+            synchronized (changedBookIds) {
+                changedBookIds.clear();
+                rebuildRequested = false;
+            }
+            long start = System.currentTimeMillis();
+            List<BookView> books = new ArrayList<>();
+            bookReadModel.forEachFromPrimary(books::add);
+            snapshot = CatalogSnapshot.of(books);
+            rebuilds.incrementAndGet();
+            lastRefreshMillis = System.currentTimeMillis() - start;
+            logger.info(String.format("Built the catalog snapshot of %d books in %d ms", books.size(), lastRefreshMillis));
+        }
+    }
+
+    public Stats getStats() {
+        CatalogSnapshot current = snapshot;
+        int pending;
+        synchronized (changedBookIds) {
+            pending = changedBookIds.size();
+        }
+        return new Stats(enabled, current != null ? current.size() : 0,
+                current != null ? current.getAuthorCount() : 0,
+                current != null ? current.getPublisherCount() : 0,
+                current != null ? current.getReviewerCount() : 0,
+                pending, rebuilds.get(), refreshes.get(), refreshedBooks.get(), lastRefreshMillis);
+    }
+
+    public static class Stats {
+        private final boolean enabled;
+        private final int books;
+        private final int authors;
+        private final int publishers;
+        private final int reviewers;
+        private final int pendingChanges;
+        private final long rebuilds;
+        private final long refreshes;
+        private final long refreshedBooks;
+        private final long lastRefreshMillis;
+
+        public Stats(boolean enabled, int books, int authors, int publishers, int reviewers, int pendingChanges,
+                     long rebuilds, long refreshes, long refreshedBooks, long lastRefreshMillis) {
+            this.enabled = enabled;
+            this.books = books;
+            this.authors = authors;
+            this.publishers = publishers;
+            this.reviewers = reviewers;
+            this.pendingChanges = pendingChanges;
+            this.rebuilds = rebuilds;
+            this.refreshes = refreshes;
+            this.refreshedBooks = refreshedBooks;
+            this.lastRefreshMillis = lastRefreshMillis;
+        }
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public int getBooks() {
+            return books;
+        }
+
+        public int getAuthors() {
+            return authors;
+        }
+
+        public int getPublishers() {
+            return publishers;
+        }
+
+        public int getReviewers() {
+            return reviewers;
+        }
+
+        public int getPendingChanges() {
+            return pendingChanges;
+        }
+
+        public long getRebuilds() {
+            return rebuilds;
+        }
+
+        public long getRefreshes() {
+            return refreshes;
+        }
+
+        public long getRefreshedBooks() {
+            return refreshedBooks;
+        }
+
+        public long getLastRefreshMillis() {
+            return lastRefreshMillis;
+        }
+    }
+}
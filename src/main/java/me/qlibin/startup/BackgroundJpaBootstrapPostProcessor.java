@@ -0,0 +1,36 @@
+package me.qlibin.startup;
+
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.orm.jpa.AbstractEntityManagerFactoryBean;
+
+/**
+ * Builds the JPA EntityManagerFactory in a background thread instead of on the main thread.
+ * Hibernate scans the entities, builds the metamodel and creates the schema while Spring goes on
+ * creating the beans that don't need JPA (the embedded Tomcat, the MVC and Spring Data REST infrastructure).
+ * The EntityManagerFactory bean is a proxy right away; the first bean that actually uses it, typically
+ * the first repository, waits for the bootstrap to complete, and a failed bootstrap fails there.
+ *
+ * Opt-in with cookbook.startup.background-jpa=true, see StartupConfiguration. Whether it pays off depends
+ * on how early JPA is needed: compare the "ready" phase of /stats/startup with and without it. As long as every
+ * repository is created eagerly (Spring Data REST and the DbCountRunner collect all of them), Spring Data JPA's
+ * jpaMappingContext asks for the metamodel soon after, and most of the bootstrap time moves to that bean.
+ */
+public class BackgroundJpaBootstrapPostProcessor implements BeanPostProcessor {
+
+    @Override
+    public Object postProcessBeforeInitialization(Object bean, String beanName) throws BeansException {
+        if (bean instanceof AbstractEntityManagerFactoryBean) {
+            SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("jpa-bootstrap-");
+            executor.setDaemon(true);
+            ((AbstractEntityManagerFactoryBean) bean).setBootstrapExecutor(executor);
+        }
+        return bean;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) throws BeansException {
+        return bean;
+    }
+}
@@ -0,0 +1,66 @@
+package me.qlibin.startup;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.springframework.aop.framework.Advised;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.aop.support.DefaultPointcutAdvisor;
+import org.springframework.aop.support.NameMatchMethodPointcut;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.core.Ordered;
+
+/**
+ * Times the run method of every CommandLineRunner for the StartupTimeline. Spring Boot calls the runners
+ * one after the other, without any event in between, so they are wrapped in a proxy of their own class:
+ * the runners can still be injected by class, and Spring Boot still finds their @Order.
+ * A runner that is already an AOP proxy only gets the timing advice added.
+ *
+ * Ordered last, so it wraps the bean after every other post processor has done its work.
+ */
+public class RunnerTimingPostProcessor implements BeanPostProcessor, Ordered {
+    private final StartupTimeline timeline;
+
+    public RunnerTimingPostProcessor(StartupTimeline timeline) {
+        this.timeline = timeline;
+    }
+
+    @Override
+    public int getOrder() {
+        return Ordered.LOWEST_PRECEDENCE;
+    }
+
+    @Override
+    public Object postProcessBeforeInitialization(Object bean, String beanName) throws BeansException {
+        return bean;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) throws BeansException {
+        if (!(bean instanceof CommandLineRunner)) {
+            return bean;
+        }
+        NameMatchMethodPointcut pointcut = new NameMatchMethodPointcut();
+        pointcut.setMappedName("run");
+        MethodInterceptor timing = invocation -> {
+            if (invocation.getArguments().length != 1) {
+                return invocation.proceed();
+            }
+            long start = System.nanoTime();
+            try {
+                return invocation.proceed();
+            } finally {
+                timeline.recordRunner(beanName, System.nanoTime() - start);
+            }
+        };
+        DefaultPointcutAdvisor advisor = new DefaultPointcutAdvisor(pointcut, timing);
+        if (bean instanceof Advised && !((Advised) bean).isFrozen()) {
+            ((Advised) bean).addAdvisor(0, advisor);
+            return bean;
+        }
+        ProxyFactory proxyFactory = new ProxyFactory(bean);
+        proxyFactory.setProxyTargetClass(true);
+        proxyFactory.addAdvisor(advisor);
+        return proxyFactory.getProxy(bean.getClass().getClassLoader());
+    }
+}
@@ -0,0 +1,29 @@
+package me.qlibin.startup;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * The post processors are declared by static @Bean methods, so they can be created before, and
+ * independently of, the configuration class itself, which is a regular bean processed by them.
+ */
+@Configuration
+public class StartupConfiguration {
+
+    @Bean
+    public static StartupTimeline startupTimeline() {
+        return new StartupTimeline();
+    }
+
+    @Bean
+    public static RunnerTimingPostProcessor runnerTimingPostProcessor(StartupTimeline startupTimeline) {
+        return new RunnerTimingPostProcessor(startupTimeline);
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "cookbook.startup", name = "background-jpa", havingValue = "true")
+    public static BackgroundJpaBootstrapPostProcessor backgroundJpaBootstrapPostProcessor() {
+        return new BackgroundJpaBootstrapPostProcessor();
+    }
+}
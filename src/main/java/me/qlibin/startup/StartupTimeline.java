@@ -0,0 +1,206 @@
+package me.qlibin.startup;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.config.InstantiationAwareBeanPostProcessorAdapter;
+import org.springframework.boot.context.embedded.EmbeddedServletContainerInitializedEvent;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEvent;
+import org.springframework.context.event.SmartApplicationListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.PriorityOrdered;
+
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Records where the startup time goes: how long every bean took to be created, injected and initialized,
+ * how long every CommandLineRunner ran (see RunnerTimingPostProcessor), and when the HTTP port was opened
+ * and the application became ready, counted from the start of the JVM.
+ *
+ * The time of a bean is measured from just before it is instantiated to the end of its initialization.
+ * The beans it depends on are usually created in between, so besides this total time every bean also has
+ * a self time, which leaves out the beans created while it was being created: the self times add up
+ * to the time spent creating beans, and show which beans are expensive by themselves.
+ *
+ * Being a post processor, it only sees the beans created after it has been registered, i.e. not the
+ * other post processors and the configuration they need. It stops recording once the application is ready.
+ */
+public class StartupTimeline extends InstantiationAwareBeanPostProcessorAdapter
+        implements PriorityOrdered, SmartApplicationListener {
+    private static final Log logger = LogFactory.getLog(StartupTimeline.class);
+
+    /** The number of beans in the report, by descending self time. */
+    static final int REPORTED_BEANS = 25;
+
+    private final long jvmStartMillis = ManagementFactory.getRuntimeMXBean().getStartTime();
+    private final long contextStartMillis = System.currentTimeMillis();
+    private volatile long portOpenMillis = -1;
+    private volatile long readyMillis = -1;
+    private volatile boolean recording = true;
+
+    private final ThreadLocal<Deque<Frame>> creating = ThreadLocal.withInitial(ArrayDeque::new);
+    private final Map<String, BeanTiming> beans = new ConcurrentHashMap<>();
+    private final Map<String, Long> runners = Collections.synchronizedMap(new LinkedHashMap<>());
+
+    @Override
+    public int getOrder() {
+        return Ordered.HIGHEST_PRECEDENCE;
+    }
+
+    @Override
+    public Object postProcessBeforeInstantiation(Class<?> beanClass, String beanName) throws BeansException {
+        if (recording) {
+            creating.get().push(new Frame(beanName, System.nanoTime()));
+        }
+        return null;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) throws BeansException {
+        if (!recording) {
+            return bean;
+        }
+        Deque<Frame> stack = creating.get();
+        // not on the stack: the object of a FactoryBean, whose own creation has already been recorded
+        if (stack.stream().noneMatch(frame -> frame.beanName.equals(beanName))) {
+            return bean;
+        }
+        // the frames above it are beans whose creation failed
+        Frame frame = stack.pop();
+        while (!frame.beanName.equals(beanName)) {
+            frame = stack.pop();
+        }
+        long totalNanos = System.nanoTime() - frame.startNanos;
+        if (!stack.isEmpty()) {
+            stack.peek().childNanos += totalNanos;
+        }
+        beans.put(beanName, new BeanTiming(beanName, bean.getClass().getName(),
+                TimeUnit.NANOSECONDS.toMillis(totalNanos - frame.childNanos), TimeUnit.NANOSECONDS.toMillis(totalNanos)));
+        return bean;
+    }
+
+    void recordRunner(String beanName, long nanos) {
+        runners.put(beanName, TimeUnit.NANOSECONDS.toMillis(nanos));
+    }
+
+    @Override
+    public boolean supportsEventType(Class<? extends ApplicationEvent> eventType) {
+        return EmbeddedServletContainerInitializedEvent.class.isAssignableFrom(eventType)
+                || ApplicationReadyEvent.class.isAssignableFrom(eventType);
+    }
+
+    @Override
+    public boolean supportsSourceType(Class<?> sourceType) {
+        return true;
+    }
+
+    @Override
+    public void onApplicationEvent(ApplicationEvent event) {
+        if (event instanceof EmbeddedServletContainerInitializedEvent) {
+            portOpenMillis = System.currentTimeMillis();
+        } else if (readyMillis < 0) {
+            readyMillis = System.currentTimeMillis();
+            recording = false;
+            creating.remove();
+            Report report = getReport();
+            logger.info(String.format("Ready %d ms after the JVM start (context started at %d ms, port opened at %d ms), " +
+                            "%d beans, runners %s, slowest beans %s",
+                    report.getPhases().get("ready"), report.getPhases().get("context"), report.getPhases().get("portOpen"),
+                    report.getBeanCount(), report.getRunners(), report.getBeans().stream().limit(5)
+                            .map(bean -> bean.getName() + "=" + bean.getSelfMillis() + "ms").collect(Collectors.toList())));
+        }
+    }
+
+    public Report getReport() {
+        Map<String, Long> phases = new LinkedHashMap<>();
+        phases.put("context", contextStartMillis - jvmStartMillis);
+        phases.put("portOpen", portOpenMillis < 0 ? -1 : portOpenMillis - jvmStartMillis);
+        phases.put("ready", readyMillis < 0 ? -1 : readyMillis - jvmStartMillis);
+        List<BeanTiming> slowest = beans.values().stream()
+                .sorted(Comparator.comparingLong(BeanTiming::getSelfMillis).reversed())
+                .limit(REPORTED_BEANS)
+                .collect(Collectors.toList());
+        synchronized (runners) {
+            return new Report(phases, beans.size(), slowest, new LinkedHashMap<>(runners));
+        }
+    }
+
+    private static final class Frame {
+        private final String beanName;
+        private final long startNanos;
+        private long childNanos;
+
+        private Frame(String beanName, long startNanos) {
+            this.beanName = beanName;
+            this.startNanos = startNanos;
+        }
+    }
+
+    public static class BeanTiming {
+        private final String name;
+        private final String type;
+        private final long selfMillis;
+        private final long totalMillis;
+
+        public BeanTiming(String name, String type, long selfMillis, long totalMillis) {
+            this.name = name;
+            this.type = type;
+            this.selfMillis = selfMillis;
+            this.totalMillis = totalMillis;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getType() {
+            return type;
+        }
+
+        public long getSelfMillis() {
+            return selfMillis;
+        }
+
+        public long getTotalMillis() {
+            return totalMillis;
+        }
+    }
+
+    public static class Report {
+        private final Map<String, Long> phases;
+        private final int beanCount;
+        private final List<BeanTiming> beans;
+        private final Map<String, Long> runners;
+
+        public Report(Map<String, Long> phases, int beanCount, List<BeanTiming> beans, Map<String, Long> runners) {
+            this.phases = phases;
+            this.beanCount = beanCount;
+            this.beans = beans;
+            this.runners = runners;
+        }
+
+        /** Milliseconds from the JVM start to the start of the context, the open port and the ready application; -1 if not yet. */
+        public Map<String, Long> getPhases() {
+            return phases;
+        }
+
+        public int getBeanCount() {
+            return beanCount;
+        }
+
+        /** The slowest beans, by self time. */
+        public List<BeanTiming> getBeans() {
+            return beans;
+        }
+
+        /** Milliseconds per CommandLineRunner, in the order they ran. */
+        public Map<String, Long> getRunners() {
+            return runners;
+        }
+    }
+}
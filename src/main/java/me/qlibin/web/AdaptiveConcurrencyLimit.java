@@ -0,0 +1,176 @@
+package me.qlibin.web;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A limit on the number of requests in flight that follows the latency the requests actually see,
+ * after the gradient algorithm of Netflix' concurrency-limits library.
+ *
+ * Two moving averages of the round-trip time are kept: a short one, over the last ten or so requests,
+ * and a long one, over hundreds. As long as the short one stays within rttTolerance times the long one, the
+ * limit grows by about its square root per sample; when requests start to queue (in the connection pool,
+ * for the H2 locks, for a Tomcat thread) the short RTT rises above the long one and the limit is scaled down
+ * by their ratio, but never by more than half at a time. Every new limit is only blended in with the given
+ * smoothing, so a single slow request does not move it much. A request that failed with a server error
+ * cuts the limit multiplicatively (the "MD" of AIMD), as errors under load are often timeouts.
+ *
+ * While fewer than half of the permits are in use the limit is left alone: the application is not the
+ * bottleneck then, and the RTTs say nothing about how much more it could take.
+ */
+public class AdaptiveConcurrencyLimit {
+    private static final int SHORT_WINDOW = 10;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double rttTolerance;
+    private final double smoothing;
+    private final double backoffRatio;
+    private final int longWindow;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile int limit;
+
+    // guarded by this
+    private double estimatedLimit;
+    private double shortRttNanos;
+    private double longRttNanos;
+
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    public AdaptiveConcurrencyLimit(int initialLimit, int minLimit, int maxLimit,
+                                    double rttTolerance, double smoothing, double backoffRatio, int longWindow) {
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.rttTolerance = rttTolerance;
+        this.smoothing = smoothing;
+        this.backoffRatio = backoffRatio;
+        this.longWindow = longWindow;
+        this.estimatedLimit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+        this.limit = (int) estimatedLimit;
+    }
+
+    /**
+     * Takes a permit if fewer requests than the limit are in flight; the caller must release() it afterwards.
+     */
+    public boolean tryAcquire() {
+        for (;;) {
+            int current = inFlight.get();
+            if (current >= limit) {
+                rejected.incrementAndGet();
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                accepted.incrementAndGet();
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Gives the permit back, with the time the request took and whether it failed.
+     */
+    public void release(long rttNanos, boolean failed) {
+        int wasInFlight = inFlight.getAndDecrement();
+        if (failed) {
+            dropped.incrementAndGet();
+        }
+        update(rttNanos, wasInFlight, failed);
+    }
+
+    private synchronized void update(long rttNanos, int wasInFlight, boolean failed) {
+        if (failed) {
+            setLimit(estimatedLimit * backoffRatio);
+            return;
+        }
+        // the averages are divided by each other
+        rttNanos = Math.max(1, rttNanos);
+        if (longRttNanos == 0) {
+            shortRttNanos = rttNanos;
+            longRttNanos = rttNanos;
+        } else {
+            shortRttNanos += (rttNanos - shortRttNanos) * 2 / (SHORT_WINDOW + 1);
+            longRttNanos += (rttNanos - longRttNanos) * 2 / (longWindow + 1);
+        }
+        // after a long overload, the long average is far above normal and would let the limit grow too fast
+        if (longRttNanos > 2 * shortRttNanos) {
+            longRttNanos *= 0.95;
+        }
+        if (wasInFlight < estimatedLimit / 2) {
+            return;
+        }
+        double gradient = Math.max(0.5, Math.min(1.0, rttTolerance * longRttNanos / shortRttNanos));
+        double newLimit = estimatedLimit * gradient + Math.sqrt(estimatedLimit);
+        setLimit(estimatedLimit * (1 - smoothing) + newLimit * smoothing);
+    }
+
+    private void setLimit(double newLimit) {
+        estimatedLimit = Math.max(minLimit, Math.min(maxLimit, newLimit));
+        limit = (int) estimatedLimit;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public synchronized Stats getStats() {
+        return new Stats(limit, inFlight.get(), accepted.get(), rejected.get(), dropped.get(),
+                shortRttNanos / TimeUnit.MILLISECONDS.toNanos(1), longRttNanos / TimeUnit.MILLISECONDS.toNanos(1));
+    }
+
+    public static class Stats {
+        private final int limit;
+        private final int inFlight;
+        private final long accepted;
+        private final long rejected;
+        private final long dropped;
+        private final double shortRttMillis;
+        private final double longRttMillis;
+
+        public Stats(int limit, int inFlight, long accepted, long rejected, long dropped,
+                     double shortRttMillis, double longRttMillis) {
+            this.limit = limit;
+            this.inFlight = inFlight;
+            this.accepted = accepted;
+            this.rejected = rejected;
+            this.dropped = dropped;
+            this.shortRttMillis = shortRttMillis;
+            this.longRttMillis = longRttMillis;
+        }
+
+        public int getLimit() {
+            return limit;
+        }
+
+        public int getInFlight() {
+            return inFlight;
+        }
+
+        public long getAccepted() {
+            return accepted;
+        }
+
+        public long getRejected() {
+            return rejected;
+        }
+
+        public long getDropped() {
+            return dropped;
+        }
+
+        public double getShortRttMillis() {
+            return shortRttMillis;
+        }
+
+        public double getLongRttMillis() {
+            return longRttMillis;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package me.qlibin.web;
+
+import me.qlibin.cache.BookIsbnCache;
+import me.qlibin.dto.BookVersion;
+import me.qlibin.dto.BookView;
+import me.qlibin.formatters.BookIdentifier;
+import me.qlibin.repository.BookRepository;
+import me.qlibin.snapshot.CatalogSnapshot;
+import me.qlibin.snapshot.CatalogSnapshots;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.Map;
+
+/**
+ * Answers conditional GET requests for the book resources (/books/{isbn} and everything below it) before
+ * the handler runs, so a client that already has the current state of the book gets a 304 Not Modified
+ * without the book being loaded, bound or serialized. The version needed for the decision, which covers
+ * the author, publisher and reviewers as well (see BookVersion), comes from wherever the body would come from:
+ * the CatalogSnapshot when it is enabled, without touching the database, so that the validator always
+ * matches the (possibly slightly older) snapshot state; otherwise from the BookIsbnCache when the book
+ * is there, and from a single-row aggregate query when it is not.
+ *
+ * For any other outcome the request proceeds, with the ETag and Last-Modified headers already set.
+ */
+public class BookConditionalGetInterceptor extends HandlerInterceptorAdapter {
+    private final BookRepository bookRepository;
+    private final BookIsbnCache isbnCache;
+    private final CatalogSnapshots catalogSnapshots;
+
+    public BookConditionalGetInterceptor(BookRepository bookRepository, BookIsbnCache isbnCache,
+                                         CatalogSnapshots catalogSnapshots) {
+        this.bookRepository = bookRepository;
+        this.isbnCache = isbnCache;
+        this.catalogSnapshots = catalogSnapshots;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (!"GET".equals(request.getMethod()) && !"HEAD".equals(request.getMethod())) {
+            return true;
+        }
+        @SuppressWarnings("unchecked")
+        Map<String, String> uriVariables =
+                (Map<String, String>) request.getAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE);
+        String isbn = uriVariables != null ? uriVariables.get("isbn") : null;
+        if (isbn == null) {
+            return true;
+        }
+        BookVersion version = findVersion(BookIdentifier.parse(isbn));
+        if (version == null || version.getVersion() == null) {
+            return true;
+        }
+        long lastModified = version.getLastModified() != null ? version.getLastModified().getTime() : -1;
+        // the same book is rendered as JSON or as Smile, see SmileHttpMessageConverter
+        response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+        return !new ServletWebRequest(request, response).checkNotModified(version.getETag(), lastModified);
+    }
+
+    private BookVersion findVersion(BookIdentifier identifier) {
+        CatalogSnapshot snapshot = catalogSnapshots.get();
+        if (snapshot != null) {
+            switch (identifier.getType()) {
+                case ISBN:
+                    return snapshot.findVersionByIsbn13(identifier.getIsbn13());
+                case ID:
+                    return snapshot.findVersionById(identifier.getId());
+                default:
+                    return null;
+            }
+        }
+        switch (identifier.getType()) {
+            case ISBN:
+                BookView cached = isbnCache.peek(identifier.getIsbn13());
+                return cached != null
+                        ? BookVersion.of(cached)
+                        : bookRepository.findVersionByIsbn13(identifier.getIsbn13());
+            case ID:
+                return bookRepository.findVersionById(identifier.getId());
+            default:
+                return null;
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package me.qlibin.web;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.util.PathMatcher;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.UrlPathHelper;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Load shedding: every endpoint group of ConcurrencyLimitProperties has an AdaptiveConcurrencyLimit,
+ * and a request that finds its group at the limit is answered right away with a 503 and a Retry-After header,
+ * before it gets to wait for a database connection and make everybody else's requests slower too.
+ * So under overload the latency of the accepted requests stays where the limit put it, and the client
+ * hears about the overload at once instead of after a timeout.
+ *
+ * The permit is held until the response is complete: for a request that goes asynchronous
+ * (DeferredResult, StreamingResponseBody) that is when the AsyncContext completes, not when the filter chain returns.
+ * Paths outside of all groups, like the change feed whose requests stay open for minutes, are not limited.
+ */
+public class ConcurrencyLimitFilter extends OncePerRequestFilter {
+    private final PathMatcher pathMatcher = new AntPathMatcher();
+    private final UrlPathHelper urlPathHelper = new UrlPathHelper();
+    private final List<Group> groups = new ArrayList<>();
+    private final int retryAfterSeconds;
+
+    public ConcurrencyLimitFilter(ConcurrencyLimitProperties properties) {
+        properties.getGroups().forEach((name, group) -> groups.add(new Group(name, group.getPaths(),
+                new AdaptiveConcurrencyLimit(group.getInitialLimit(), group.getMinLimit(), group.getMaxLimit(),
+                        properties.getRttTolerance(), properties.getSmoothing(), properties.getBackoffRatio(),
+                        properties.getLongWindow()))));
+        this.retryAfterSeconds = properties.getRetryAfterSeconds();
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        AdaptiveConcurrencyLimit limit = limitFor(urlPathHelper.getPathWithinApplication(request));
+        if (limit == null) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+        if (!limit.tryAcquire()) {
+            response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+            return;
+        }
+        long start = System.nanoTime();
+        boolean completed = false;
+        try {
+            filterChain.doFilter(request, response);
+            completed = true;
+        } finally {
+            if (completed && isAsyncStarted(request)) {
+                request.getAsyncContext().addListener(new Release(limit, start, response));
+            } else {
+                limit.release(System.nanoTime() - start, !completed || isServerError(response));
+            }
+        }
+    }
+
+    private AdaptiveConcurrencyLimit limitFor(String path) {
+        for (Group group : groups) {
+            for (String pattern : group.paths) {
+                if (pathMatcher.match(pattern, path)) {
+                    return group.limit;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The limits by group name.
+     */
+    public Map<String, AdaptiveConcurrencyLimit> getLimits() {
+        Map<String, AdaptiveConcurrencyLimit> limits = new LinkedHashMap<>();
+        groups.forEach(group -> limits.put(group.name, group.limit));
+        return limits;
+    }
+
+    private static boolean isServerError(HttpServletResponse response) {
+        return response.getStatus() >= 500;
+    }
+
+    private static final class Group {
+        private final String name;
+        private final List<String> paths;
+        private final AdaptiveConcurrencyLimit limit;
+
+        private Group(String name, List<String> paths, AdaptiveConcurrencyLimit limit) {
+            this.name = name;
+            this.paths = paths;
+            this.limit = limit;
+        }
+    }
+
+    /**
+     * onComplete is called after a timeout or an error as well, so the permit is released there, once.
+     */
+    private static final class Release implements AsyncListener {
+        private final AdaptiveConcurrencyLimit limit;
+        private final long start;
+        private final HttpServletResponse response;
+        private volatile boolean failed;
+
+        private Release(AdaptiveConcurrencyLimit limit, long start, HttpServletResponse response) {
+            this.limit = limit;
+            this.start = start;
+            this.response = response;
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            limit.release(System.nanoTime() - start, failed || isServerError(response));
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            failed = true;
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            failed = true;
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package me.qlibin.web;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@ConfigurationProperties(prefix = "cookbook.concurrency")
+public class ConcurrencyLimitProperties {
+    /**
+     * Whether the ConcurrencyLimitFilter is installed at all.
+     */
+    private boolean enabled = true;
+
+    /**
+     * The endpoint groups by name; each has its own adaptive limit. Requests outside of all groups are not limited.
+     */
+    private Map<String, Group> groups = new LinkedHashMap<>();
+
+    /**
+     * Sent in the Retry-After header of a rejected request.
+     */
+    private int retryAfterSeconds = 1;
+
+    /**
+     * How far the short-term RTT may rise above the long-term one before the limit is lowered.
+     */
+    private double rttTolerance = 1.5;
+
+    /**
+     * The weight of a newly computed limit against the current one, between 0 and 1.
+     */
+    private double smoothing = 0.2;
+
+    /**
+     * What the limit is multiplied with when a request fails with a server error.
+     */
+    private double backoffRatio = 0.9;
+
+    /**
+     * The number of requests the long-term RTT is averaged over.
+     */
+    private int longWindow = 600;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public Map<String, Group> getGroups() {
+        return groups;
+    }
+
+    public void setGroups(Map<String, Group> groups) {
+        this.groups = groups;
+    }
+
+    public int getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+
+    public void setRetryAfterSeconds(int retryAfterSeconds) {
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public double getRttTolerance() {
+        return rttTolerance;
+    }
+
+    public void setRttTolerance(double rttTolerance) {
+        this.rttTolerance = rttTolerance;
+    }
+
+    public double getSmoothing() {
+        return smoothing;
+    }
+
+    public void setSmoothing(double smoothing) {
+        this.smoothing = smoothing;
+    }
+
+    public double getBackoffRatio() {
+        return backoffRatio;
+    }
+
+    public void setBackoffRatio(double backoffRatio) {
+        this.backoffRatio = backoffRatio;
+    }
+
+    public int getLongWindow() {
+        return longWindow;
+    }
+
+    public void setLongWindow(int longWindow) {
+        this.longWindow = longWindow;
+    }
+
+    public static class Group {
+        /**
+         * Ant-style patterns of the request paths in the group, such as /books/**.
+         */
+        private List<String> paths = new ArrayList<>();
+
+        private int initialLimit = 20;
+
+        private int minLimit = 4;
+
+        private int maxLimit = 200;
+
+        public List<String> getPaths() {
+            return paths;
+        }
+
+        public void setPaths(List<String> paths) {
+            this.paths = paths;
+        }
+
+        public int getInitialLimit() {
+            return initialLimit;
+        }
+
+        public void setInitialLimit(int initialLimit) {
+            this.initialLimit = initialLimit;
+        }
+
+        public int getMinLimit() {
+            return minLimit;
+        }
+
+        public void setMinLimit(int minLimit) {
+            this.minLimit = minLimit;
+        }
+
+        public int getMaxLimit() {
+            return maxLimit;
+        }
+
+        public void setMaxLimit(int maxLimit) {
+            this.maxLimit = maxLimit;
+        }
+    }
+}
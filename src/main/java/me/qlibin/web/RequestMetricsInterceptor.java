@@ -0,0 +1,90 @@
+package me.qlibin.web;
+
+import me.qlibin.jdbc.StatementCapture;
+import me.qlibin.metrics.RequestMetrics;
+import org.apache.catalina.connector.ResponseFacade;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
+
+import javax.servlet.ServletResponse;
+import javax.servlet.ServletResponseWrapper;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records the latency, status code and response size of every request in RequestMetrics,
+ * under the name of the handler that served it, e.g. "BookController.getBook", and the number of SQL
+ * statements it issued, from the difference of the thread's StatementCapture count before and after.
+ * A request that goes asynchronous may run statements on other threads, so its statements are not counted.
+ *
+ * Nothing is allocated for a request that completes on the thread it started on: the start time is kept
+ * in a per-thread slot, the metrics are looked up by the handler's Method, and the response size is read
+ * from Tomcat's byte counter. Only a request that goes asynchronous (DeferredResult, StreamingResponseBody)
+ * carries its start time over to the thread that completes it, as a request attribute.
+ *
+ * It has to be registered before any interceptor that may stop a request in preHandle,
+ * so that its afterCompletion is still called for those requests (e.g. the 304s of
+ * BookConditionalGetInterceptor).
+ */
+public class RequestMetricsInterceptor extends HandlerInterceptorAdapter {
+    private static final String ASYNC_START_ATTRIBUTE = RequestMetricsInterceptor.class.getName() + ".START";
+    /** The start time and the statement count of the thread at the start of the current request. */
+    private static final ThreadLocal<long[]> START = ThreadLocal.withInitial(() -> new long[2]);
+
+    private final RequestMetrics requestMetrics;
+
+    public RequestMetricsInterceptor(RequestMetrics requestMetrics) {
+        this.requestMetrics = requestMetrics;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (request.getAttribute(ASYNC_START_ATTRIBUTE) == null) {
+            long[] start = START.get();
+            start[0] = System.nanoTime();
+            start[1] = StatementCapture.threadCount();
+        }
+        return true;
+    }
+
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response,
+                                               Object handler) {
+        request.setAttribute(ASYNC_START_ATTRIBUTE, START.get()[0]);
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+                                Exception ex) {
+        Object asyncStart = request.getAttribute(ASYNC_START_ATTRIBUTE);
+        long start = asyncStart != null ? (Long) asyncStart : START.get()[0];
+        long latencyMicros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start);
+        // an exception that is not resolved to a response becomes a 500 after the interceptors have run
+        int status = ex != null && response.getStatus() < 400 ? 500 : response.getStatus();
+        RequestMetrics.Endpoint endpoint = endpoint(handler);
+        endpoint.record(latencyMicros, status, contentWritten(response));
+        if (asyncStart == null) {
+            endpoint.recordStatements(StatementCapture.threadCount() - START.get()[1]);
+        }
+    }
+
+    private RequestMetrics.Endpoint endpoint(Object handler) {
+        // the naming functions capture nothing, so they are not allocated per call either
+        if (handler instanceof HandlerMethod) {
+            return requestMetrics.endpoint(((HandlerMethod) handler).getMethod(),
+                    method -> method.getDeclaringClass().getSimpleName() + "." + method.getName());
+        }
+        return requestMetrics.endpoint(handler.getClass(), Class::getSimpleName);
+    }
+
+    /**
+     * The number of body bytes written so far, or -1 when the container does not count them.
+     */
+    private static long contentWritten(ServletResponse response) {
+        while (response instanceof ServletResponseWrapper) {
+            response = ((ServletResponseWrapper) response).getResponse();
+        }
+        return response instanceof ResponseFacade ? ((ResponseFacade) response).getContentWritten() : -1;
+    }
+}
@@ -0,0 +1,38 @@
+package me.qlibin.writebehind;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A change to the properties of one existing book, author or publisher: the new value of every changed property.
+ * Two mutations of the same entity are coalesced into one, the later value of a property replacing the earlier.
+ */
+public class CatalogMutation {
+    private final Class<?> entityType;
+    private final Long id;
+    private final Map<String, Object> changes;
+
+    public CatalogMutation(Class<?> entityType, Long id, Map<String, Object> changes) {
+        this.entityType = entityType;
+        this.id = id;
+        this.changes = Collections.unmodifiableMap(new LinkedHashMap<>(changes));
+    }
+
+    public Class<?> getEntityType() {
+        return entityType;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public Map<String, Object> getChanges() {
+        return changes;
+    }
+
+    @Override
+    public String toString() {
+        return entityType.getSimpleName() + "#" + id + changes;
+    }
+}
@@ -0,0 +1,418 @@
+package me.qlibin.writebehind;
+
+import me.qlibin.entity.Author;
+import me.qlibin.entity.Book;
+import me.qlibin.entity.Publisher;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.BeanWrapper;
+import org.springframework.beans.PropertyAccessorFactory;
+import org.springframework.beans.SimpleTypeConverter;
+import org.springframework.beans.TypeMismatchException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.concurrent.ListenableFuture;
+import org.springframework.util.concurrent.SettableListenableFuture;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityNotFoundException;
+import javax.persistence.PersistenceContext;
+import java.beans.PropertyDescriptor;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Write-behind for catalog edits: instead of a transaction and a commit per change, the CatalogMutations
+ * are queued and written by a single background thread in groups, one transaction per group.
+ * The group is flushed when batch-size entities have pending changes, or max-delay-ms after the oldest
+ * of them was queued, whichever comes first. With hibernate.jdbc.batch_size and order_updates
+ * the UPDATEs of a group also go to the database as JDBC batches.
+ *
+ * The queue holds one entry per entity: a mutation of an entity that is already waiting is merged
+ * into the waiting one, so an entity edited ten times between two flushes is written once.
+ * The callers of a merged entry share its outcome, so every mutation is checked and its values converted
+ * to the property types in submit, before it is merged: a caller with a bad value gets the exception,
+ * and does not make the write of everybody else's changes to the entity fail with it.
+ * The number of waiting entities is bounded by capacity. When it is full, submit waits up to offer-timeout-ms
+ * for room and then throws a TaskRejectedException, pushing back on the callers instead of growing without limit.
+ *
+ * submit returns a future that completes once the transaction that wrote the mutation has been committed,
+ * for callers that need to know their change is durable; the others can ignore it.
+ * If the group transaction fails, the mutations of the group are retried one transaction each, so only
+ * the failing mutation completes with the exception.
+ */
+@Component
+public class WriteBehindQueue {
+    private static final Log logger = LogFactory.getLog(WriteBehindQueue.class);
+
+    /** The entity types that can be mutated by name, and the properties of each that may be changed. */
+    static final Map<String, Class<?>> ENTITY_TYPES = new LinkedHashMap<>();
+    static final Map<Class<?>, Set<String>> MUTABLE_PROPERTIES = new HashMap<>();
+
+    static {
+        ENTITY_TYPES.put("book", Book.class);
+        ENTITY_TYPES.put("author", Author.class);
+        ENTITY_TYPES.put("publisher", Publisher.class);
+        MUTABLE_PROPERTIES.put(Book.class, new HashSet<>(Arrays.asList("title", "description")));
+        MUTABLE_PROPERTIES.put(Author.class, new HashSet<>(Arrays.asList("firstName", "lastName")));
+        MUTABLE_PROPERTIES.put(Publisher.class, new HashSet<>(Collections.singletonList("name")));
+    }
+
+    private final int batchSize;
+    private final long maxDelayNanos;
+    private final int capacity;
+    private final long offerTimeoutNanos;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate transactionTemplate;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private final LinkedHashMap<Key, Pending> pending = new LinkedHashMap<>();
+    private volatile boolean running = true;
+    private Thread flusher;
+
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong transactions = new AtomicLong();
+
+    @Autowired
+    public WriteBehindQueue(@Value("${cookbook.write-behind.batch-size:100}") int batchSize,
+                            @Value("${cookbook.write-behind.max-delay-ms:50}") long maxDelayMillis,
+                            @Value("${cookbook.write-behind.capacity:10000}") int capacity,
+                            @Value("${cookbook.write-behind.offer-timeout-ms:100}") long offerTimeoutMillis) {
+        this.batchSize = batchSize;
+        this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(maxDelayMillis);
+        this.capacity = capacity;
+        this.offerTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(offerTimeoutMillis);
+    }
+
+    @PostConstruct
+    public void start() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        flusher = new Thread(this::flushLoop, "write-behind");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    /**
+     * Writes what is still queued, then stops the flusher thread.
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        lock.lock();
+        try {
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        flusher.join(TimeUnit.SECONDS.toMillis(10));
+    }
+
+    /**
+     * The entity type of the given name: "book", "author" or "publisher".
+     */
+    public static Class<?> entityType(String name) {
+        Class<?> type = ENTITY_TYPES.get(name);
+        if (type == null) {
+            throw new IllegalArgumentException("Unknown entity type " + name);
+        }
+        return type;
+    }
+
+    /**
+     * Queues the mutation, or merges it into the one waiting for the same entity.
+     *
+     * @return completes once the mutation has been committed, or with the exception it failed with
+     * @throws IllegalArgumentException when the mutation changes a property that can't be changed,
+     * or to a value that can't be converted to the type of the property
+     * @throws TaskRejectedException when the queue stays full for longer than the offer timeout
+     */
+    public ListenableFuture<Void> submit(CatalogMutation mutation) throws InterruptedException {
+        Map<String, Object> changes = convert(mutation);
+        Key key = new Key(mutation.getEntityType(), mutation.getId());
+        lock.lock();
+        try {
+            submitted.incrementAndGet();
+            Pending waiting = pending.get(key);
+            if (waiting != null) {
+                waiting.changes.putAll(changes);
+                coalesced.incrementAndGet();
+                return waiting.future;
+            }
+            long remainingNanos = offerTimeoutNanos;
+            while (pending.size() >= capacity) {
+                if (remainingNanos <= 0 || !running) {
+                    rejected.incrementAndGet();
+                    throw new TaskRejectedException("The write-behind queue is full");
+                }
+                remainingNanos = notFull.awaitNanos(remainingNanos);
+            }
+            // merged into an entry queued by another caller while this one was waiting
+            waiting = pending.get(key);
+            if (waiting != null) {
+                waiting.changes.putAll(changes);
+                coalesced.incrementAndGet();
+                return waiting.future;
+            }
+            Pending entry = new Pending(key, changes, System.nanoTime());
+            pending.put(key, entry);
+            if (pending.size() == 1 || pending.size() >= batchSize) {
+                notEmpty.signal();
+            }
+            return entry.future;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The changes of the mutation with every value converted to the type of its property.
+     */
+    private static Map<String, Object> convert(CatalogMutation mutation) {
+        Class<?> entityType = mutation.getEntityType();
+        Set<String> mutable = MUTABLE_PROPERTIES.getOrDefault(entityType, Collections.emptySet());
+        SimpleTypeConverter typeConverter = new SimpleTypeConverter();
+        Map<String, Object> changes = new LinkedHashMap<>();
+        mutation.getChanges().forEach((property, value) -> {
+            PropertyDescriptor descriptor = mutable.contains(property)
+                    ? BeanUtils.getPropertyDescriptor(entityType, property) : null;
+            if (descriptor == null || descriptor.getWriteMethod() == null) {
+                throw new IllegalArgumentException("Property " + property + " of " +
+                        entityType.getSimpleName() + " can't be changed");
+            }
+            try {
+                changes.put(property, typeConverter.convertIfNecessary(value, descriptor.getPropertyType()));
+            } catch (TypeMismatchException e) {
+                throw new IllegalArgumentException("Property " + property + " of " +
+                        entityType.getSimpleName() + " can't be set to " + value, e);
+            }
+        });
+        return changes;
+    }
+
+    private void flushLoop() {
+        while (true) {
+            List<Pending> group;
+            try {
+                group = nextGroup();
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (group == null) {
+                return;
+            }
+            write(group);
+        }
+    }
+
+    /**
+     * Waits until a group is due and takes it off the queue; null once stopped and drained.
+     */
+    private List<Pending> nextGroup() throws InterruptedException {
+        lock.lock();
+        try {
+            while (true) {
+                if (pending.isEmpty()) {
+                    if (!running) {
+                        return null;
+                    }
+                    notEmpty.await();
+                    continue;
+                }
+                long dueIn = pending.values().iterator().next().queuedAt + maxDelayNanos - System.nanoTime();
+                if (pending.size() >= batchSize || dueIn <= 0 || !running) {
+                    break;
+                }
+                notEmpty.awaitNanos(dueIn);
+            }
+            List<Pending> group = new ArrayList<>(Math.min(batchSize, pending.size()));
+            for (Iterator<Pending> it = pending.values().iterator(); it.hasNext() && group.size() < batchSize; ) {
+                group.add(it.next());
+                it.remove();
+            }
+            notFull.signalAll();
+            return group;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void write(List<Pending> group) {
+        try {
+            transactionTemplate.execute(status -> {
+                group.forEach(this::apply);
+                return null;
+            });
+            transactions.incrementAndGet();
+            written.addAndGet(group.size());
+            group.forEach(entry -> entry.future.set(null));
+        } catch (RuntimeException groupFailure) {
+            if (group.size() == 1) {
+                fail(group.get(0), groupFailure);
+                return;
+            }
+            for (Pending entry : group) {
+                try {
+                    transactionTemplate.execute(status -> {
+                        apply(entry);
+                        return null;
+                    });
+                    transactions.incrementAndGet();
+                    written.incrementAndGet();
+                    entry.future.set(null);
+                } catch (RuntimeException e) {
+                    fail(entry, e);
+                }
+            }
+        }
+    }
+
+    private void fail(Pending entry, RuntimeException e) {
+        failed.incrementAndGet();
+        logger.warn("Could not write " + entry.key + ": " + e.getMessage());
+        entry.future.setException(e);
+    }
+
+    private void apply(Pending entry) {
+        Object entity = entityManager.find(entry.key.entityType, entry.key.id);
+        if (entity == null) {
+            throw new EntityNotFoundException(entry.key + " does not exist");
+        }
+        BeanWrapper wrapper = PropertyAccessorFactory.forBeanPropertyAccess(entity);
+        wrapper.setPropertyValues(entry.changes);
+    }
+
+    public Stats getStats() {
+        int size;
+        lock.lock();
+        try {
+            size = pending.size();
+        } finally {
+            lock.unlock();
+        }
+        return new Stats(size, capacity, submitted.get(), coalesced.get(), rejected.get(), written.get(), failed.get(),
+                transactions.get());
+    }
+
+    private static final class Key {
+        private final Class<?> entityType;
+        private final Long id;
+
+        private Key(Class<?> entityType, Long id) {
+            this.entityType = entityType;
+            this.id = id;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return entityType == other.entityType && id.equals(other.id);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * entityType.hashCode() + id.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return entityType.getSimpleName() + "#" + id;
+        }
+    }
+
+    /** The merged changes of one entity, guarded by the queue lock until taken off the queue. */
+    private static final class Pending {
+        private final Key key;
+        private final Map<String, Object> changes;
+        private final long queuedAt;
+        private final SettableListenableFuture<Void> future = new SettableListenableFuture<>();
+
+        private Pending(Key key, Map<String, Object> changes, long queuedAt) {
+            this.key = key;
+            this.changes = changes;
+            this.queuedAt = queuedAt;
+        }
+    }
+
+    public static class Stats {
+        private final int size;
+        private final int capacity;
+        private final long submitted;
+        private final long coalesced;
+        private final long rejected;
+        private final long written;
+        private final long failed;
+        private final long transactions;
+
+        public Stats(int size, int capacity, long submitted, long coalesced, long rejected, long written, long failed,
+                     long transactions) {
+            this.size = size;
+            this.capacity = capacity;
+            this.submitted = submitted;
+            this.coalesced = coalesced;
+            this.rejected = rejected;
+            this.written = written;
+            this.failed = failed;
+            this.transactions = transactions;
+        }
+
+        /** Entities with changes waiting to be written. */
+        public int getSize() {
+            return size;
+        }
+
+        public int getCapacity() {
+            return capacity;
+        }
+
+        public long getSubmitted() {
+            return submitted;
+        }
+
+        /** Mutations merged into one that was already waiting. */
+        public long getCoalesced() {
+            return coalesced;
+        }
+
+        public long getRejected() {
+            return rejected;
+        }
+
+        /** Entities written, i.e. committed. */
+        public long getWritten() {
+            return written;
+        }
+
+        public long getFailed() {
+            return failed;
+        }
+
+        public long getTransactions() {
+            return transactions;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package me.qlibin;
+
+import me.qlibin.entity.Author;
+import me.qlibin.entity.Book;
+import me.qlibin.jdbc.StatementCapture;
+import me.qlibin.repository.AuthorRepository;
+import me.qlibin.repository.BookRepository;
+import me.qlibin.snapshot.CatalogSnapshots;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * The snapshot read path, which is off in CookbookApplicationTests. The catalog is an in-memory database
+ * of its own, as the test changes it; the refresher is not left to the scheduler but called by the test.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = {
+		"spring.datasource.url = jdbc:h2:mem:snapshot;DB_CLOSE_DELAY=-1",
+		"cookbook.snapshot.enabled = true",
+		"cookbook.snapshot.refresh-interval-ms = 3600000"})
+@AutoConfigureMockMvc
+public class CatalogSnapshotTests {
+
+	private static final String ISBN = "978-1-78528-415-1";
+	private static final String ADDED_ISBN = "978-0-306-40615-7";
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@Autowired
+	private CatalogSnapshots catalogSnapshots;
+
+	@Autowired
+	private BookRepository bookRepository;
+
+	@Autowired
+	private AuthorRepository authorRepository;
+
+	@Test
+	public void booksAreServedFromTheSnapshot() throws Exception {
+		// the controller, the BookFormatter behind /reviewers and the conditional GET all read the snapshot
+		try (StatementCapture capture = StatementCapture.start()) {
+			String etag = mockMvc.perform(get("/books/" + ISBN))
+					.andExpect(status().isOk())
+					.andExpect(jsonPath("$.title").value("Spring Boot Recipes"))
+					.andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+			mockMvc.perform(get("/books/" + ISBN).header(HttpHeaders.IF_NONE_MATCH, etag))
+					.andExpect(status().isNotModified());
+			mockMvc.perform(get("/books/" + ISBN + "/reviewers")).andExpect(status().isOk());
+			mockMvc.perform(get("/books/1/reviewers")).andExpect(status().isOk());
+			capture.assertAtMost(0);
+		}
+	}
+
+	@Test
+	public void snapshotFollowsCommittedChanges() throws Exception {
+		// whatever is still pending from the startup, e.g. the changes of the sample data
+		catalogSnapshots.refresh();
+		Book book = bookRepository.findBookByIsbn(ISBN);
+		Book added = bookRepository.save(new Book(ADDED_ISBN, "Added to the catalog", book.getAuthor(), book.getPublisher()));
+		try {
+			long refreshedBooks = catalogSnapshots.getStats().getRefreshedBooks();
+			catalogSnapshots.refresh();
+			assertEquals(refreshedBooks + 1, catalogSnapshots.getStats().getRefreshedBooks());
+			String etag = mockMvc.perform(get("/books/" + ADDED_ISBN))
+					.andExpect(status().isOk())
+					.andExpect(jsonPath("$.title").value("Added to the catalog"))
+					.andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+			// an author may be on any number of books, so renaming one rebuilds the whole snapshot
+			Author author = authorRepository.findOne(book.getAuthor().getId());
+			String lastName = author.getLastName();
+			author.setLastName("Renamed");
+			author = authorRepository.save(author);
+			try {
+				long rebuilds = catalogSnapshots.getStats().getRebuilds();
+				catalogSnapshots.refresh();
+				assertEquals(rebuilds + 1, catalogSnapshots.getStats().getRebuilds());
+				String renamedEtag = mockMvc.perform(get("/books/" + ADDED_ISBN).header(HttpHeaders.IF_NONE_MATCH, etag))
+						.andExpect(status().isOk())
+						.andExpect(jsonPath("$.author.lastName").value("Renamed"))
+						.andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+				assertNotEquals(etag, renamedEtag);
+			} finally {
+				author.setLastName(lastName);
+				authorRepository.save(author);
+				catalogSnapshots.refresh();
+			}
+		} finally {
+			bookRepository.delete(added);
+		}
+		// a deleted book is dropped by the incremental refresh, without a rebuild
+		long rebuilds = catalogSnapshots.getStats().getRebuilds();
+		catalogSnapshots.refresh();
+		assertEquals(rebuilds, catalogSnapshots.getStats().getRebuilds());
+		assertNull(catalogSnapshots.get().findByIsbn13(9780306406157L));
+		assertNotNull(catalogSnapshots.get().findByIsbn13(9781785284151L));
+		assertEquals(bookRepository.count(), catalogSnapshots.get().size());
+	}
+}
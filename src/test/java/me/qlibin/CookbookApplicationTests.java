@@ -1,7 +1,31 @@
 package me.qlibin;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jayway.jsonpath.JsonPath;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import me.qlibin.cache.BookIsbnCache;
+import me.qlibin.cache.SecondLevelCacheStats;
+import me.qlibin.controllers.BookController;
+import me.qlibin.counters.EntityCounters;
+import me.qlibin.dto.BookVersion;
+import me.qlibin.dto.BookView;
+import me.qlibin.entity.Author;
 import me.qlibin.entity.Book;
+import me.qlibin.entity.Publisher;
+import me.qlibin.entity.Reviewer;
+import me.qlibin.jdbc.StatementCapture;
+import me.qlibin.outbox.OutboxRelay;
+import me.qlibin.readmodel.BookReadModel;
+import me.qlibin.repository.AuthorRepository;
 import me.qlibin.repository.BookRepository;
+import me.qlibin.repository.PublisherRepository;
+import me.qlibin.repository.ReviewerRepository;
+import me.qlibin.snapshot.CatalogSnapshot;
+import me.qlibin.web.AdaptiveConcurrencyLimit;
+import me.qlibin.web.ConcurrencyLimitFilter;
+import me.qlibin.web.SmileHttpMessageConverter;
+import me.qlibin.writebehind.CatalogMutation;
+import me.qlibin.writebehind.WriteBehindQueue;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -14,17 +38,40 @@ import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.*;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.concurrent.ListenableFuture;
+import org.test.bookpubstarter.dbcount.DbCountRunner;
+import org.test.bookpubstarter.dbcount.DbCountSnapshot;
 
 import java.io.IOException;
 import java.net.URI;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.startsWith;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @RunWith(SpringRunner.class)
@@ -41,6 +88,45 @@ public class CookbookApplicationTests {
 	@Autowired
 	private BookRepository repository;
 
+	@Autowired
+	private BookIsbnCache isbnCache;
+
+	@Autowired
+	private DbCountRunner dbCountRunner;
+
+	@Autowired
+	private EntityCounters entityCounters;
+
+	@Autowired
+	private ReviewerRepository reviewerRepository;
+
+	@Autowired
+	private SecondLevelCacheStats secondLevelCacheStats;
+
+	@Autowired
+	private BookReadModel bookReadModel;
+
+	@Autowired
+	private ObjectMapper objectMapper;
+
+	@Autowired
+	private ConcurrencyLimitFilter concurrencyLimitFilter;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	@Autowired
+	private AuthorRepository authorRepository;
+
+	@Autowired
+	private PublisherRepository publisherRepository;
+
+	@Autowired
+	private WriteBehindQueue writeBehindQueue;
+
+	@Autowired
+	private OutboxRelay outboxRelay;
+
 	@Before
 	public void setupMockMvc() {
 	}
@@ -72,6 +158,460 @@ public class CookbookApplicationTests {
 		assertEquals("Packt", book.getPublisher().getName());
 	}
 
+	@Test
+	public void webappBooksKeysetPage() throws Exception {
+		mockMvc.perform(get("/books").param("after", "0").param("size", "1"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$[0].isbn").value("978-1-78528-415-1"))
+				.andExpect(header().string(HttpHeaders.LINK, containsString("after=")));
+		mockMvc.perform(get("/books").param("after", "0"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.length()").value(1))
+				.andExpect(header().doesNotExist(HttpHeaders.LINK));
+	}
+
+	@Test
+	public void webappBooksMultiGet() throws Exception {
+		mockMvc.perform(get("/books").param("isbn", "978-1-78528-415-1,not-an-isbn,978-0-306-40615-7,1785284150"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.length()").value(4))
+				.andExpect(jsonPath("$[0].status").value("FOUND"))
+				.andExpect(jsonPath("$[0].book.title").value("Spring Boot Recipes"))
+				.andExpect(jsonPath("$[1].isbn").value("not-an-isbn"))
+				.andExpect(jsonPath("$[1].status").value("INVALID"))
+				.andExpect(jsonPath("$[2].status").value("NOT_FOUND"))
+				.andExpect(jsonPath("$[3].isbn").value("1785284150"))
+				.andExpect(jsonPath("$[3].book.isbn").value("978-1-78528-415-1"));
+		mockMvc.perform(post("/books/batch").contentType(MediaType.APPLICATION_JSON)
+				.content("[\"9781785284151\", \"978-0-306-40615-7\"]"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$[0].status").value("FOUND"))
+				.andExpect(jsonPath("$[1].status").value("NOT_FOUND"));
+		mockMvc.perform(get("/books").param("after", "0").param("isbn", "978-1-78528-415-1"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$[0].status").value("FOUND"));
+		mockMvc.perform(post("/books/batch").contentType(MediaType.APPLICATION_JSON)
+				.content(objectMapper.writeValueAsString(Collections.nCopies(501, "9781785284151"))))
+				.andExpect(status().isBadRequest())
+				.andExpect(status().reason(containsString("At most 500 ISBNs")));
+	}
+
+	@Test
+	public void webappBooksNdjsonStream() {
+		HttpHeaders headers = new HttpHeaders();
+		headers.setAccept(Arrays.asList(MediaType.parseMediaType("application/x-ndjson")));
+		ResponseEntity<String> response = restTemplate.exchange("/books", HttpMethod.GET,
+				new HttpEntity<>(headers), String.class);
+		assertEquals(HttpStatus.OK, response.getStatusCode());
+		String[] lines = response.getBody().split("\n");
+		assertEquals(1, lines.length);
+		assertThat(lines[0], containsString("978-1-78528-415-1"));
+	}
+
+	@Test
+	public void isbnCacheServesRepeatedLookups() throws Exception {
+		mockMvc.perform(get("/books/978-1-78528-415-1")).andExpect(status().isOk());
+		long hits = isbnCache.getStats().getHits();
+		mockMvc.perform(get("/books/978-1-78528-415-1"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.title").value("Spring Boot Recipes"));
+		assertEquals(hits + 1, isbnCache.getStats().getHits());
+	}
+
+	@Test
+	public void bookIdentifierBinding() throws Exception {
+		mockMvc.perform(get("/books/9781785284151/reviewers")).andExpect(status().isOk());
+		mockMvc.perform(get("/books/1785284150/reviewers")).andExpect(status().isOk());
+		mockMvc.perform(get("/books/1/reviewers")).andExpect(status().isOk());
+		mockMvc.perform(get("/books/978-1-78528-415-2/reviewers")).andExpect(status().isBadRequest());
+		mockMvc.perform(get("/books/not-an-isbn/reviewers")).andExpect(status().isBadRequest());
+	}
+
+	@Test
+	public void repositoryCountsSnapshot() {
+		DbCountSnapshot.Count books = dbCountRunner.refresh().get("BookRepository");
+		assertEquals(DbCountSnapshot.Status.OK, books.getStatus());
+		assertEquals(Long.valueOf(1), books.getEntries());
+		assertEquals(books, dbCountRunner.getSnapshot().get("BookRepository"));
+	}
+
+	@Test
+	public void entityCountersFollowCommittedChanges() {
+		assertEquals(1, entityCounters.get(Book.class));
+		Reviewer reviewer = reviewerRepository.save(new Reviewer("Jane", "Doe"));
+		assertEquals(1, entityCounters.get(Reviewer.class));
+		reviewerRepository.delete(reviewer);
+		assertEquals(0, entityCounters.get(Reviewer.class));
+	}
+
+	@Test
+	public void bulkImportDeduplicatesAuthorsAndPublishers() throws Exception {
+		String csv = "isbn,title,authorFirstName,authorLastName,publisherName\n" +
+				"978-0-306-40615-7,\"Imported, with a comma\",Alex,Antonov,Packt\n" +
+				"9781785284151,Spring Boot Recipes,Alex,Antonov,Packt\n" +
+				"not-an-isbn,Broken,Alex,Antonov,Packt\n";
+		mockMvc.perform(post("/books/import").contentType("text/csv").content(csv))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.rows").value(3))
+				.andExpect(jsonPath("$.imported").value(1))
+				.andExpect(jsonPath("$.duplicates").value(1))
+				.andExpect(jsonPath("$.rejected").value(1))
+				.andExpect(jsonPath("$.authorsCreated").value(0))
+				.andExpect(jsonPath("$.publishersCreated").value(0));
+		Book imported = repository.findBookByIsbn("978-0-306-40615-7");
+		try {
+			assertEquals("Imported, with a comma", imported.getTitle());
+			assertEquals("Packt", imported.getPublisher().getName());
+			assertEquals(2, entityCounters.get(Book.class));
+		} finally {
+			repository.delete(imported);
+		}
+	}
+
+	@Test
+	public void conditionalGetOfBookResources() throws Exception {
+		for (String url : Arrays.asList("/books/978-1-78528-415-1", "/books/978-1-78528-415-1/reviewers", "/publishers/1")) {
+			String etag = mockMvc.perform(get(url))
+					.andExpect(status().isOk())
+					.andExpect(header().string(HttpHeaders.LAST_MODIFIED, notNullValue()))
+					.andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+			assertNotNull(url, etag);
+			mockMvc.perform(get(url).header(HttpHeaders.IF_NONE_MATCH, etag))
+					.andExpect(status().isNotModified());
+		}
+	}
+
+	@Test
+	public void renamingTheAuthorChangesTheBookETag() throws Exception {
+		String url = "/books/978-1-78528-415-1";
+		String etag = mockMvc.perform(get(url)).andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+		Author author = repository.findBookByIsbn("978-1-78528-415-1").getAuthor();
+		String lastName = author.getLastName();
+		author.setLastName("Renamed");
+		author = authorRepository.save(author);
+		try {
+			mockMvc.perform(get(url).header(HttpHeaders.IF_NONE_MATCH, etag))
+					.andExpect(status().isOk())
+					.andExpect(jsonPath("$.author.lastName").value("Renamed"));
+		} finally {
+			author.setLastName(lastName);
+			authorRepository.save(author);
+		}
+	}
+
+	@Test
+	public void asyncBookEndpoints() throws Exception {
+		MvcResult book = mockMvc.perform(get("/async/books/978-1-78528-415-1"))
+				.andExpect(request().asyncStarted())
+				.andReturn();
+		mockMvc.perform(asyncDispatch(book))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.title").value("Spring Boot Recipes"));
+		MvcResult reviewers = mockMvc.perform(get("/async/books/1785284150/reviewers"))
+				.andExpect(request().asyncStarted())
+				.andReturn();
+		mockMvc.perform(asyncDispatch(reviewers)).andExpect(status().isOk());
+		MvcResult malformed = mockMvc.perform(get("/async/books/978-1-78528-415-2/reviewers")).andReturn();
+		mockMvc.perform(asyncDispatch(malformed)).andExpect(status().isBadRequest());
+	}
+
+	@Test
+	public void smileContentNegotiation() throws Exception {
+		byte[] smile = mockMvc.perform(get("/books/978-1-78528-415-1")
+				.accept(SmileHttpMessageConverter.APPLICATION_SMILE))
+				.andExpect(status().isOk())
+				.andExpect(content().contentTypeCompatibleWith(SmileHttpMessageConverter.APPLICATION_SMILE))
+				.andReturn().getResponse().getContentAsByteArray();
+		Book book = new ObjectMapper(new SmileFactory()).readValue(smile, Book.class);
+		assertEquals("Spring Boot Recipes", book.getTitle());
+		assertEquals("Packt", book.getPublisher().getName());
+		mockMvc.perform(get("/books/978-1-78528-415-1"))
+				.andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+				.andExpect(header().string(HttpHeaders.ETAG, startsWith("W/\"")))
+				.andExpect(header().string(HttpHeaders.VARY, containsString(HttpHeaders.ACCEPT)));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void booksCannotHaveAnInvalidIsbn() {
+		// a book is only found by the ISBN-13 of its ISBN, which a wrong check digit does not have
+		new Book("978-1-78528-415-0", "Wrong check digit", null, null);
+	}
+
+	@Test
+	public void bookSearch() throws Exception {
+		mockMvc.perform(get("/books/search").param("q", "boot recip"))
+				.andExpect(status().isOk())
+				.andExpect(header().string(BookController.TOTAL_COUNT_HEADER, "1"))
+				.andExpect(jsonPath("$[0].isbn").value("978-1-78528-415-1"));
+		mockMvc.perform(get("/books/search").param("q", "antonov"))
+				.andExpect(jsonPath("$.length()").value(1));
+		mockMvc.perform(get("/books/search").param("q", "boot cooking"))
+				.andExpect(status().isOk())
+				.andExpect(header().string(BookController.TOTAL_COUNT_HEADER, "0"))
+				.andExpect(jsonPath("$.length()").value(0));
+	}
+
+	@Test
+	public void requestLatencyMetrics() {
+		restTemplate.getForEntity("/books/978-1-78528-415-1", String.class);
+		ResponseEntity<String> metrics = restTemplate.getForEntity("/stats/latency", String.class);
+		assertEquals(HttpStatus.OK, metrics.getStatusCode());
+		assertThat(metrics.getBody(), containsString(
+				"http_server_requests_seconds{handler=\"BookController.getBook\",quantile=\"0.99\"}"));
+		assertThat(metrics.getBody(), containsString(
+				"http_server_responses_total{handler=\"BookController.getBook\",status=\"200\"}"));
+		assertThat(metrics.getBody(), containsString(
+				"http_server_response_size_bytes_count{handler=\"BookController.getBook\"}"));
+	}
+
+	@Test
+	public void authorsComeFromTheSecondLevelCache() throws Exception {
+		long hits = secondLevelCacheStats.getRegions().get(Author.class.getName()).getHits();
+		mockMvc.perform(get("/authors/1"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.lastName").value("Antonov"));
+		assertEquals(hits + 1, secondLevelCacheStats.getRegions().get(Author.class.getName()).getHits());
+		mockMvc.perform(get("/stats/l2-cache"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.regions['me.qlibin.entity.Author'].hitRatio").isNumber());
+	}
+
+	@Test
+	public void reviewersKeysetSlice() throws Exception {
+		Iterable<Reviewer> reviewers = reviewerRepository.save(Arrays.asList(
+				new Reviewer("Ann", "One"), new Reviewer("Bob", "Two"), new Reviewer("Cid", "Three")));
+		try {
+			String next = JsonPath.read(mockMvc.perform(get("/reviewers").param("after", "0").param("size", "2"))
+					.andExpect(status().isOk())
+					.andExpect(jsonPath("$._embedded.reviewers.length()").value(2))
+					.andExpect(jsonPath("$._embedded.reviewers[0].firstName").value("Ann"))
+					.andExpect(jsonPath("$.page").doesNotExist())
+					.andReturn().getResponse().getContentAsString(), "$._links.next.href");
+			mockMvc.perform(get(URI.create(next)))
+					.andExpect(status().isOk())
+					.andExpect(jsonPath("$._embedded.reviewers.length()").value(1))
+					.andExpect(jsonPath("$._embedded.reviewers[0].firstName").value("Cid"))
+					.andExpect(jsonPath("$._links.next").doesNotExist());
+		} finally {
+			reviewerRepository.delete(reviewers);
+		}
+	}
+
+	@Test
+	public void startupTimeline() throws Exception {
+		mockMvc.perform(get("/stats/startup"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.phases.ready").isNumber())
+				.andExpect(jsonPath("$.beans[0].selfMillis").isNumber())
+				.andExpect(jsonPath("$.runners.schedulerRunner").isNumber())
+				.andExpect(jsonPath("$.runners.dbCountRunner").isNumber());
+	}
+
+	@Test
+	public void writeBehindCoalescesAndAcknowledges() throws Exception {
+		WriteBehindQueue.Stats before = writeBehindQueue.getStats();
+		ListenableFuture<Void> first = writeBehindQueue.submit(
+				new CatalogMutation(Book.class, 1L, Collections.singletonMap("description", "first draft")));
+		ListenableFuture<Void> second = writeBehindQueue.submit(
+				new CatalogMutation(Book.class, 1L, Collections.singletonMap("description", "final")));
+		second.get(10, TimeUnit.SECONDS);
+		assertTrue(first.isDone());
+		WriteBehindQueue.Stats after = writeBehindQueue.getStats();
+		assertEquals(1, after.getCoalesced() - before.getCoalesced());
+		assertEquals(1, after.getTransactions() - before.getTransactions());
+		assertEquals(1, after.getWritten() - before.getWritten());
+		assertEquals("final", repository.findOne(1L).getDescription());
+
+		MvcResult result = mockMvc.perform(patch("/catalog/book/1").param("wait", "true")
+				.contentType(MediaType.APPLICATION_JSON).content("{\"description\": \"acknowledged\"}"))
+				.andExpect(request().asyncStarted())
+				.andReturn();
+		mockMvc.perform(asyncDispatch(result)).andExpect(status().isNoContent());
+		assertEquals("acknowledged", repository.findOne(1L).getDescription());
+		mockMvc.perform(asyncDispatch(mockMvc.perform(patch("/catalog/book/1").param("wait", "true")
+				.contentType(MediaType.APPLICATION_JSON).content("{\"description\": null}")).andReturn()))
+				.andExpect(status().isNoContent());
+		mockMvc.perform(patch("/catalog/book/1").contentType(MediaType.APPLICATION_JSON)
+				.content("{\"isbn\": \"978-0-306-40615-7\"}"))
+				.andExpect(status().isBadRequest());
+		// rejected when submitted, rather than failing the write it would have been merged into
+		mockMvc.perform(patch("/catalog/book/1").contentType(MediaType.APPLICATION_JSON)
+				.content("{\"title\": {\"nested\": 1}}"))
+				.andExpect(status().isBadRequest());
+	}
+
+	@Test
+	public void changeFeedIsResumable() throws Exception {
+		MvcResult feed = mockMvc.perform(get("/changes").accept(MediaType.parseMediaType("text/event-stream")))
+				.andExpect(request().asyncStarted())
+				.andReturn();
+		Reviewer reviewer = reviewerRepository.save(new Reviewer("Jane", "Feed"));
+		reviewerRepository.delete(reviewer);
+		String events = awaitEvents(feed, 2);
+		assertThat(events, containsString("event:reviewer"));
+		assertThat(events, containsString("\"kind\":\"INSERT\""));
+		assertThat(events, containsString("\"lastName\":\"Feed\""));
+		assertThat(events, containsString("\"kind\":\"DELETE\""));
+
+		String firstId = events.substring(events.indexOf("id:") + 3, events.indexOf('\n', events.indexOf("id:")));
+		MvcResult resumed = mockMvc.perform(get("/changes").header("Last-Event-ID", firstId))
+				.andExpect(request().asyncStarted())
+				.andReturn();
+		String replayed = awaitEvents(resumed, 1);
+		assertThat(replayed, containsString("\"kind\":\"DELETE\""));
+		assertFalse(replayed.contains("\"kind\":\"INSERT\""));
+	}
+
+	@Test
+	public void changeFeedResumesAfterPurgeAndRestart() throws Exception {
+		MvcResult feed = mockMvc.perform(get("/changes")).andExpect(request().asyncStarted()).andReturn();
+		reviewerRepository.delete(reviewerRepository.save(new Reviewer("Jane", "Purged")));
+		awaitEvents(feed, 2);
+		long lastPosition = outboxRelay.getLastPosition();
+
+		// everything is past the retention time, but the newest row stays to carry the numbering over the restart
+		assertThat(outboxRelay.purge(new Date(System.currentTimeMillis() + 60000)), greaterThanOrEqualTo(1));
+		outboxRelay.stop();
+		outboxRelay.start();
+		assertEquals(lastPosition, outboxRelay.getLastPosition());
+
+		MvcResult resumed = mockMvc.perform(get("/changes").header("Last-Event-ID", lastPosition))
+				.andExpect(request().asyncStarted())
+				.andReturn();
+		reviewerRepository.delete(reviewerRepository.save(new Reviewer("Jane", "Resumed")));
+		String events = awaitEvents(resumed, 2);
+		assertThat(events, containsString("id:" + (lastPosition + 1) + "\n"));
+		assertThat(events, containsString("\"lastName\":\"Resumed\""));
+		assertFalse(events.contains("event:reset"));
+
+		// an offset the relay never gave out is not waited for
+		MvcResult ahead = mockMvc.perform(get("/changes").header("Last-Event-ID", lastPosition + 1000))
+				.andExpect(request().asyncStarted())
+				.andReturn();
+		assertThat(awaitEvents(ahead, 1), containsString("event:reset"));
+	}
+
+	private static String awaitEvents(MvcResult result, int count) throws Exception {
+		for (int attempt = 0; attempt < 100; attempt++) {
+			String content = result.getResponse().getContentAsString();
+			if (content.split("\n\n").length >= count && content.endsWith("\n\n")) {
+				return content;
+			}
+			Thread.sleep(50);
+		}
+		return result.getResponse().getContentAsString();
+	}
+
+	@Test
+	public void catalogSnapshotReadsLikeTheReadModel() throws Exception {
+		List<BookView> books = bookReadModel.findAll();
+		CatalogSnapshot snapshot = CatalogSnapshot.of(books);
+		assertEquals(objectMapper.writeValueAsString(books), objectMapper.writeValueAsString(snapshot.findAll()));
+		BookView book = books.get(0);
+		assertEquals(objectMapper.writeValueAsString(book),
+				objectMapper.writeValueAsString(snapshot.findByIsbn13(book.getIsbn13())));
+		assertEquals(book.getVersion(), snapshot.findById(book.getId()).getVersion());
+		assertEquals(BookVersion.of(book).getETag(), snapshot.findVersionByIsbn13(book.getIsbn13()).getETag());
+		assertEquals(BookVersion.of(book).getLastModified().getTime(),
+				snapshot.findVersionById(book.getId()).getLastModified().getTime());
+		assertNull(snapshot.findByIsbn13(9780306406157L));
+
+		BookView added = new BookView(1000L, "978-0-306-40615-7", 9780306406157L, "Added", null, 0L, null,
+				book.getAuthor().getId(), book.getAuthor().getFirstName(), book.getAuthor().getLastName(),
+				book.getAuthor().getVersion(), book.getAuthor().getLastModified(), null, null, null, null);
+		CatalogSnapshot changed = snapshot.withChanges(Collections.singletonList(added), Collections.singletonList(book.getId()));
+		assertEquals(1, changed.size());
+		assertNull(changed.findById(book.getId()));
+		assertEquals("Added", changed.findByIsbn13(9780306406157L).getTitle());
+		assertEquals(book.getAuthor().getLastName(), changed.findById(1000L).getAuthor().getLastName());
+		assertEquals(1, snapshot.size());
+	}
+
+	@Test
+	public void requestsOverTheConcurrencyLimitAreShed() throws Exception {
+		AdaptiveConcurrencyLimit limit = concurrencyLimitFilter.getLimits().get("books");
+		int permits = 0;
+		while (limit.tryAcquire()) {
+			permits++;
+		}
+		try {
+			mockMvc.perform(get("/books/978-1-78528-415-1"))
+					.andExpect(status().isServiceUnavailable())
+					.andExpect(header().string(HttpHeaders.RETRY_AFTER, "1"));
+			mockMvc.perform(get("/publishers/1")).andExpect(status().isOk());
+		} finally {
+			for (int i = 0; i < permits; i++) {
+				limit.release(TimeUnit.MILLISECONDS.toNanos(1), false);
+			}
+		}
+		mockMvc.perform(get("/books/978-1-78528-415-1")).andExpect(status().isOk());
+		mockMvc.perform(get("/stats/concurrency"))
+				.andExpect(jsonPath("$.books.limit").value(limit.getLimit()))
+				.andExpect(jsonPath("$.books.rejected").value(greaterThanOrEqualTo(1)))
+				.andExpect(jsonPath("$['data-rest'].inFlight").value(0));
+	}
+
+	/**
+	 * The read endpoints and the detail fetch plan of Book issue a fixed number of statements,
+	 * however many associations are touched: one statement more here is most likely an N+1 select.
+	 */
+	@Test
+	public void bookReadsIssueAFixedNumberOfStatements() throws Exception {
+		// several books, each with its own author, publisher and reviewers, so that a query per book
+		// or per association would take more statements than the limits below
+		List<Book> books = new ArrayList<>();
+		List<Reviewer> reviewers = new ArrayList<>();
+		List<Author> authors = new ArrayList<>();
+		List<Publisher> publishers = new ArrayList<>();
+		try {
+			for (String isbn : Arrays.asList("9780306406164", "9780306406171", "9780306406188")) {
+				Author author = authorRepository.save(new Author("Author", isbn));
+				authors.add(author);
+				Publisher publisher = publisherRepository.save(new Publisher("Publisher " + isbn));
+				publishers.add(publisher);
+				Book book = new Book(isbn, "Book " + isbn, author, publisher);
+				List<Reviewer> bookReviewers = new ArrayList<>();
+				reviewerRepository.save(Arrays.asList(new Reviewer("Ann", isbn), new Reviewer("Bob", isbn)))
+						.forEach(bookReviewers::add);
+				reviewers.addAll(bookReviewers);
+				book.setReviewers(bookReviewers);
+				books.add(repository.save(book));
+			}
+
+			try (StatementCapture capture = StatementCapture.start()) {
+				mockMvc.perform(get("/books"))
+						.andExpect(status().isOk())
+						.andExpect(jsonPath("$.length()").value(4))
+						.andExpect(jsonPath("$[3].reviewers.length()").value(2));
+				capture.assertAtMost(2);
+			}
+			try (StatementCapture capture = StatementCapture.start()) {
+				mockMvc.perform(get("/books/9780306406188/reviewers"))
+						.andExpect(status().isOk())
+						.andExpect(jsonPath("$.length()").value(2));
+				capture.assertAtMost(3);
+			}
+			try (StatementCapture capture = StatementCapture.start()) {
+				int read = new TransactionTemplate(transactionManager).execute(status -> {
+					int count = 0;
+					for (Book book : repository.findAllDetailed()) {
+						book.getAuthor().getLastName();
+						book.getPublisher().getName();
+						count += book.getReviewers().size();
+					}
+					return count;
+				});
+				assertEquals(6, read);
+				capture.assertAtMost(1);
+			}
+		} finally {
+			repository.delete(books);
+			reviewerRepository.delete(reviewers);
+			authorRepository.delete(authors);
+			publisherRepository.delete(publishers);
+		}
+	}
+
 	@Test
 	public void webappPublisherApi() throws Exception {
 		mockMvc.perform(get("/publishers/1"))
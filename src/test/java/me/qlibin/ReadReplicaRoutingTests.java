@@ -0,0 +1,87 @@
+package me.qlibin;
+
+import me.qlibin.datasource.ReplicaRoutingDataSource;
+import me.qlibin.readmodel.BookReadModel;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.File;
+import java.sql.Timestamp;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The replica is a second in-memory H2 database, "replicated" by copying the primary into it with SCRIPT/RUNSCRIPT.
+ * The primary is in memory as well, so this context doesn't share the database of CookbookApplicationTests.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = {
+		"spring.datasource.url = jdbc:h2:mem:routing-primary;DB_CLOSE_DELAY=-1",
+		"cookbook.routing.replicas[0].url = jdbc:h2:mem:routing-replica;DB_CLOSE_DELAY=-1",
+		"cookbook.routing.replicas[0].username = sa",
+		"cookbook.routing.check-interval-millis = 3600000"})
+public class ReadReplicaRoutingTests {
+
+	@Autowired
+	private ReplicaRoutingDataSource routingDataSource;
+
+	@Autowired
+	private BookReadModel bookReadModel;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	private final JdbcTemplate primary = new JdbcTemplate(
+			new DriverManagerDataSource("jdbc:h2:mem:routing-primary", "sa", ""));
+
+	private final JdbcTemplate replica = new JdbcTemplate(
+			new DriverManagerDataSource("jdbc:h2:mem:routing-replica", "sa", ""));
+
+	@Test
+	public void readOnlyTransactionsGoToHealthyReplicas() throws Exception {
+		File script = File.createTempFile("routing", ".sql");
+		try {
+			primary.execute("script drop to '" + script.getAbsolutePath() + "'");
+			replica.execute("runscript from '" + script.getAbsolutePath() + "'");
+		} finally {
+			script.delete();
+		}
+		replica.update("update book set title = 'Read from the replica' where id = 1");
+		routingDataSource.checkReplicas();
+		assertTrue(routingDataSource.getReplicaStatus().get("replica-0").isAvailable());
+
+		assertEquals("Read from the replica", bookReadModel.findById(1L).getTitle());
+		assertEquals("Spring Boot Recipes", readInWriteTransaction());
+		// what is kept in a cache or the snapshot is always read from the primary
+		assertEquals("Spring Boot Recipes", bookReadModel.findByIsbn13FromPrimary(9781785284151L).getTitle());
+		assertEquals("Spring Boot Recipes",
+				bookReadModel.findByIdsFromPrimary(Collections.singletonList(1L)).get(0).getTitle());
+
+		// too far behind: the heartbeat the replica has is older than cookbook.routing.max-lag-millis
+		replica.update("update replication_heartbeat set beat = ?",
+				new Timestamp(System.currentTimeMillis() - 60000));
+		routingDataSource.checkReplicas();
+		assertFalse(routingDataSource.getReplicaStatus().get("replica-0").isAvailable());
+		assertEquals("Spring Boot Recipes", bookReadModel.findById(1L).getTitle());
+
+		// down: after the shutdown the URL opens a new, empty database
+		replica.execute("shutdown");
+		routingDataSource.checkReplicas();
+		assertFalse(routingDataSource.getReplicaStatus().get("replica-0").isHealthy());
+		assertEquals("Spring Boot Recipes", bookReadModel.findById(1L).getTitle());
+	}
+
+	private String readInWriteTransaction() {
+		return new TransactionTemplate(transactionManager).execute(status -> bookReadModel.findById(1L).getTitle());
+	}
+}